@@ -0,0 +1,189 @@
+package mxr.benchmark;
+
+import com.alibaba.ttl.threadpool.agent.TtlAgent;
+import mxr.utils.ttl.TTLExecutorFactory;
+import mxr.utils.ttl.TtlContextHolderUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Agent模式与包装模式的开销对比
+ * <p>
+ * 同一组基准分别在未加载与加载TTL Agent的JVM中各执行一次（mode参数区分）：
+ * wrapperSubmit经TTLExecutorFactory的包装线程池提交，plainSubmit经JDK线程池提交，
+ * Agent模式下后者由Agent增强并传递上下文，包装模式下作为不传递上下文的基线；
+ * startup启动一个只触发线程池、ForkJoinPool与Timer类加载的子JVM，差值即Agent的启动代价。
+ * 需通过本类的main运行，由main为agent分组追加-javaagent参数：
+ * </p>
+ * <pre>
+ *     mvn -Pbenchmark test-compile exec:exec -Djmh.main=mxr.benchmark.AgentModeBenchmark -Djmh.args=AgentModeBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AgentModeBenchmark {
+
+    private static final String WRAPPER = "wrapper";
+
+    private static final String AGENT = "agent";
+
+    @Param({WRAPPER})
+    public String mode;
+
+    private ExecutorService wrapperExecutor;
+
+    private ExecutorService plainExecutor;
+
+    @Setup
+    public void setup() {
+        if (AGENT.equals(mode)) {
+            TtlContextHolderUtil.enableAgentMode();
+        }
+        wrapperExecutor = TTLExecutorFactory.newFixedThreadPool("bench-wrapper", 2);
+        plainExecutor = Executors.newFixedThreadPool(2);
+    }
+
+    @TearDown
+    public void tearDown() {
+        wrapperExecutor.shutdownNow();
+        plainExecutor.shutdownNow();
+        TtlContextHolderUtil.disableAgentMode();
+    }
+
+    @State(Scope.Thread)
+    public static class RequestState {
+
+        @Setup
+        public void setup() {
+            TtlContextHolderUtil.markAsRequestThread();
+            TtlContextHolderUtil.getContext().addProperty("tenantId", "tenant-1");
+        }
+
+        @TearDown
+        public void tearDown() {
+            TtlContextHolderUtil.clearRequestThreadMark();
+            TtlContextHolderUtil.clearContext();
+        }
+    }
+
+    @Benchmark
+    public Object wrapperSubmit(RequestState request) throws ExecutionException, InterruptedException {
+        return wrapperExecutor.submit(() -> TtlContextHolderUtil.getContext().getProperty("tenantId")).get();
+    }
+
+    @Benchmark
+    public Object plainSubmit(RequestState request) throws ExecutionException, InterruptedException {
+        // 包装模式下JDK线程池的线程不能获取上下文
+        return plainExecutor.submit(() -> TtlContextHolderUtil.isAgentMode()
+                ? TtlContextHolderUtil.getContext().getProperty("tenantId") : null).get();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 10)
+    public int startup() throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        // 子JVM沿用当前JVM的-javaagent参数；Agent所在的jar由引导类加载器加载，无法在此通过类反查路径
+        for (String argument : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            if (argument.startsWith("-javaagent:")) {
+                command.add(argument);
+            }
+        }
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(StartupProbe.class.getName());
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        return process.waitFor();
+    }
+
+    /**
+     * TTL Agent所在的jar，即classpath中的transmittable-thread-local
+     */
+    private static String agentJar() throws Exception {
+        return new File(TtlAgent.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+    }
+
+    /**
+     * 分别以包装模式与Agent模式执行本类的基准，命令行参数按JMH的格式解析，结果文件按模式加后缀
+     */
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions options = new CommandLineOptions(args);
+        for (String current : new String[]{WRAPPER, AGENT}) {
+            ChainedOptionsBuilder builder = new OptionsBuilder()
+                    .parent(options)
+                    .param("mode", current);
+            if (options.getResult().hasValue()) {
+                builder.result(options.getResult().get().replaceFirst("(\\.\\w+)?$", "-" + current + "$1"));
+            }
+            if (AGENT.equals(current)) {
+                builder.jvmArgsAppend("-javaagent:" + agentJar());
+            }
+            new Runner(builder.build()).run();
+        }
+    }
+
+    /**
+     * startup基准启动的子JVM，触发Agent增强的各个类的加载后退出
+     */
+    public static class StartupProbe {
+
+        public static void main(String[] args) throws Exception {
+            ExecutorService executor = Executors.newFixedThreadPool(1);
+            executor.submit(() -> { }).get();
+            executor.shutdown();
+            ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+            scheduler.schedule(() -> { }, 0, TimeUnit.MILLISECONDS).get();
+            scheduler.shutdown();
+            ForkJoinPool.commonPool().submit(() -> { }).get();
+            CountDownLatch latch = new CountDownLatch(1);
+            Timer timer = new Timer(true);
+            timer.schedule(new TimerTask() {
+                @Override
+                public void run() {
+                    latch.countDown();
+                }
+            }, 0L);
+            latch.await();
+            timer.cancel();
+        }
+    }
+}
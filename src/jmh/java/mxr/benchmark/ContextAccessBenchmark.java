@@ -0,0 +1,126 @@
+package mxr.benchmark;
+
+import mxr.utils.ttl.BaseContext;
+import mxr.utils.ttl.TtlContextHolderUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * 上下文读取与属性读写开销
+ * <p>
+ * getContext分别在请求线程与工作线程上测量。JMH的基准线程无法由TtlThreadFactory创建，
+ * 工作线程场景通过注册可信线程匹配器模拟，测得的是instanceof检查与请求线程检查都未命中后的最慢可信路径
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContextAccessBenchmark {
+
+    @State(Scope.Thread)
+    public static class RequestThreadState {
+
+        @Setup
+        public void setup() {
+            TtlContextHolderUtil.markAsRequestThread();
+        }
+
+        @TearDown
+        public void tearDown() {
+            TtlContextHolderUtil.clearRequestThreadMark();
+            TtlContextHolderUtil.clearContext();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class WorkerThreadState {
+
+        private Predicate<Thread> matcher;
+
+        @Setup
+        public void setup() {
+            Thread benchmarkThread = Thread.currentThread();
+            matcher = thread -> thread == benchmarkThread;
+            TtlContextHolderUtil.registerTrustedThreadMatcher(matcher);
+        }
+
+        @TearDown
+        public void tearDown() {
+            TtlContextHolderUtil.unregisterTrustedThreadMatcher(matcher);
+            TtlContextHolderUtil.clearContext();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class PropertyState {
+
+        @Param({"1", "10", "100"})
+        public int keyCount;
+
+        private String[] keys;
+
+        private BaseContext<Object> context;
+
+        private int cursor;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            TtlContextHolderUtil.markAsRequestThread();
+            context = TtlContextHolderUtil.getContext();
+            keys = new String[keyCount];
+            for (int i = 0; i < keyCount; i++) {
+                keys[i] = "key-" + i;
+                context.addProperty(keys[i], "value-" + i);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            TtlContextHolderUtil.clearRequestThreadMark();
+            TtlContextHolderUtil.clearContext();
+        }
+
+        String nextKey() {
+            int index = cursor;
+            cursor = index + 1 == keys.length ? 0 : index + 1;
+            return keys[index];
+        }
+    }
+
+    @Benchmark
+    public BaseContext<Object> getContextOnRequestThread(RequestThreadState state) {
+        return TtlContextHolderUtil.getContext();
+    }
+
+    @Benchmark
+    public BaseContext<Object> getContextOnWorkerThread(WorkerThreadState state) {
+        return TtlContextHolderUtil.getContext();
+    }
+
+    @Benchmark
+    public Object getProperty(PropertyState state) {
+        return state.context.getProperty(state.nextKey());
+    }
+
+    @Benchmark
+    public void addProperty(PropertyState state) {
+        String key = state.nextKey();
+        state.context.addProperty(key, key);
+    }
+}
@@ -0,0 +1,86 @@
+package mxr.benchmark;
+
+import mxr.utils.ttl.ContextCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 上下文请求头编解码开销
+ * <p>
+ * 按属性数量分别测量不压缩与超过阈值后压缩的编解码耗时；分配量可追加 {@code -prof gc} 查看
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContextCodecBenchmark {
+
+    @Param({"4", "32"})
+    private int keyCount;
+
+    private final ContextCodec plainCodec = new ContextCodec(0, ContextCodec.DEFAULT_MAX_ENCODED_LENGTH);
+
+    private final ContextCodec compressingCodec = new ContextCodec(64, ContextCodec.DEFAULT_MAX_ENCODED_LENGTH);
+
+    private Map<String, Object> properties;
+
+    private String plainEncoded;
+
+    private String compressedEncoded;
+
+    @Setup
+    public void setup() {
+        properties = new HashMap<>();
+        for (int i = 0; i < keyCount; i++) {
+            switch (i % 3) {
+                case 0:
+                    properties.put("key-" + i, "tenant-" + i + "-0123456789abcdef");
+                    break;
+                case 1:
+                    properties.put("key-" + i, 10_000_000_000L + i);
+                    break;
+                default:
+                    properties.put("key-" + i, (i & 1) == 0);
+                    break;
+            }
+        }
+        plainEncoded = plainCodec.encode(properties);
+        compressedEncoded = compressingCodec.encode(properties);
+    }
+
+    @Benchmark
+    public String encode() {
+        return plainCodec.encode(properties);
+    }
+
+    @Benchmark
+    public Map<String, Object> decode() {
+        return plainCodec.decode(plainEncoded);
+    }
+
+    @Benchmark
+    public String encodeCompressed() {
+        return compressingCodec.encode(properties);
+    }
+
+    @Benchmark
+    public Map<String, Object> decodeCompressed() {
+        return compressingCodec.decode(compressedEncoded);
+    }
+}
@@ -0,0 +1,118 @@
+package mxr.benchmark;
+
+import mxr.utils.ttl.BaseContext;
+import mxr.utils.ttl.BaseContextImpl;
+import mxr.utils.ttl.ContextKey;
+import mxr.utils.ttl.CopyOnWriteContextImpl;
+import mxr.utils.ttl.TransmitPolicy;
+import mxr.utils.ttl.TtlContextHolderUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 类型化槽位key与字符串key的读写开销对比
+ * <p>
+ * BaseContextImpl为原ConcurrentHashMap实现；CopyOnWriteContextImpl分别通过字符串API（走注册表查找）
+ * 与ContextKey（直接按槽位访问）读写同一组字段；snapshot对比派生子上下文时有无需要执行传递策略的槽位
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContextPropertyBenchmark {
+
+    private static final ContextKey<String> TENANT_ID = ContextKey.of("bench.tenantId", String.class);
+
+    private static final ContextKey<String> TRACE_ID = ContextKey.of("bench.traceId", String.class);
+
+    private static final ContextKey<byte[]> BUFFER = ContextKey.of("bench.buffer", byte[].class, TransmitPolicy.localOnly());
+
+    private BaseContext<Object> mapContext;
+
+    private BaseContext<Object> slotContext;
+
+    private CopyOnWriteContextImpl<Object> policyContext;
+
+    private String value;
+
+    private String otherValue;
+
+    private boolean flip;
+
+    @Setup
+    public void setup() {
+        // addProperty仅允许请求线程调用，JMH的Thread状态在基准线程上初始化
+        TtlContextHolderUtil.markAsRequestThread();
+        value = "tenant-" + System.nanoTime();
+        otherValue = value + "-other";
+        mapContext = new BaseContextImpl<>();
+        mapContext.addProperty(TENANT_ID.getName(), value);
+        mapContext.addProperty(TRACE_ID.getName(), value);
+        slotContext = new CopyOnWriteContextImpl<>();
+        slotContext.put(TENANT_ID, value);
+        slotContext.put(TRACE_ID, value);
+        policyContext = new CopyOnWriteContextImpl<>();
+        policyContext.put(TENANT_ID, value);
+        policyContext.put(BUFFER, new byte[64 * 1024]);
+    }
+
+    @TearDown
+    public void tearDown() {
+        TtlContextHolderUtil.clearRequestThreadMark();
+    }
+
+    @Benchmark
+    public String mapGet() {
+        return (String) mapContext.getProperty(TENANT_ID.getName());
+    }
+
+    @Benchmark
+    public String slotGetByName() {
+        return (String) slotContext.getProperty(TENANT_ID.getName());
+    }
+
+    @Benchmark
+    public String slotGetByKey() {
+        return slotContext.get(TENANT_ID);
+    }
+
+    @Benchmark
+    public void mapPut() {
+        mapContext.addProperty(TRACE_ID.getName(), nextValue());
+    }
+
+    @Benchmark
+    public void slotPutByKey() {
+        slotContext.put(TRACE_ID, nextValue());
+    }
+
+    @Benchmark
+    public BaseContext<Object> snapshot() {
+        return ((CopyOnWriteContextImpl<Object>) slotContext).snapshot();
+    }
+
+    @Benchmark
+    public BaseContext<Object> snapshotWithLocalOnly() {
+        return policyContext.snapshot();
+    }
+
+    // 交替写入两个值，避免写入相同引用时被短路
+    private String nextValue() {
+        flip = !flip;
+        return flip ? value : otherValue;
+    }
+}
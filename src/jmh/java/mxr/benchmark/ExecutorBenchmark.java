@@ -0,0 +1,132 @@
+package mxr.benchmark;
+
+import com.alibaba.ttl.TtlUnwrap;
+import mxr.utils.ttl.ContextExecutorService;
+import mxr.utils.ttl.TTLExecutorFactory;
+import mxr.utils.ttl.TtlContextHolderUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TTL线程池相对普通线程池的额外开销
+ * <p>
+ * 普通线程池与共享TTL线程池使用相同的线程数，任务体只读取一个上下文属性，
+ * 差值即为上下文捕获、回放、恢复的代价。fanOutTtlBatch通过submitAll整批只捕获一次上下文
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExecutorBenchmark {
+
+    private ExecutorService ttlExecutor;
+
+    private ExecutorService plainExecutor;
+
+    @Setup
+    public void setup() {
+        ttlExecutor = TTLExecutorFactory.getSharedTtlExecutor();
+        ExecutorService unwrapped = TtlUnwrap.unwrap(ttlExecutor);
+        int poolSize = unwrapped instanceof ThreadPoolExecutor
+                ? ((ThreadPoolExecutor) unwrapped).getMaximumPoolSize()
+                : Runtime.getRuntime().availableProcessors();
+        plainExecutor = Executors.newFixedThreadPool(poolSize);
+    }
+
+    @TearDown
+    public void tearDown() {
+        plainExecutor.shutdownNow();
+    }
+
+    @State(Scope.Thread)
+    public static class RequestState {
+
+        @Setup
+        public void setup() {
+            TtlContextHolderUtil.markAsRequestThread();
+            TtlContextHolderUtil.getContext().addProperty("tenantId", "tenant-1");
+        }
+
+        @TearDown
+        public void tearDown() {
+            TtlContextHolderUtil.clearRequestThreadMark();
+            TtlContextHolderUtil.clearContext();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class FanOutState {
+
+        @Param({"1", "4", "16", "64"})
+        public int fanOut;
+    }
+
+    @Benchmark
+    public Object submitTtl(RequestState state) throws ExecutionException, InterruptedException {
+        return ttlExecutor.submit(() -> TtlContextHolderUtil.getContext().getProperty("tenantId")).get();
+    }
+
+    @Benchmark
+    public Object submitPlain(RequestState state) throws ExecutionException, InterruptedException {
+        return plainExecutor.submit(() -> "tenant-1").get();
+    }
+
+    @Benchmark
+    public Object fanOutTtl(RequestState state, FanOutState fanOutState) {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[fanOutState.fanOut];
+        for (int i = 0; i < futures.length; i++) {
+            futures[i] = CompletableFuture.supplyAsync(
+                    () -> TtlContextHolderUtil.getContext().getProperty("tenantId"), ttlExecutor);
+        }
+        return CompletableFuture.allOf(futures).join();
+    }
+
+    @Benchmark
+    public Object fanOutTtlBatch(RequestState state, FanOutState fanOutState)
+            throws ExecutionException, InterruptedException {
+        List<Callable<Object>> tasks = new ArrayList<>(fanOutState.fanOut);
+        for (int i = 0; i < fanOutState.fanOut; i++) {
+            tasks.add(() -> TtlContextHolderUtil.getContext().getProperty("tenantId"));
+        }
+        // 整批只捕获一次上下文
+        List<Future<Object>> futures = ((ContextExecutorService) ttlExecutor).submitAll(tasks);
+        Object last = null;
+        for (Future<Object> future : futures) {
+            last = future.get();
+        }
+        return last;
+    }
+
+    @Benchmark
+    public Object fanOutPlain(RequestState state, FanOutState fanOutState) {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[fanOutState.fanOut];
+        for (int i = 0; i < futures.length; i++) {
+            futures[i] = CompletableFuture.supplyAsync(() -> "tenant-1", plainExecutor);
+        }
+        return CompletableFuture.allOf(futures).join();
+    }
+}
@@ -0,0 +1,69 @@
+package mxr.benchmark;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import mxr.utils.ttl.LatencyHistogram;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单次耗时记录的开销
+ * <p>
+ * 对比任务耗时直方图与开启百分位直方图的Micrometer Timer，两者记录相同的耗时序列；
+ * 以4个线程并发记录，体现分段对竞争的影响。分配量可追加 {@code -prof gc} 查看，直方图的记录应为0分配
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class LatencyRecordingBenchmark {
+
+    private LatencyHistogram histogram;
+
+    private Timer timer;
+
+    @State(Scope.Thread)
+    public static class Values {
+
+        private long next = 1_000L;
+
+        // 在1微秒到约1毫秒之间变化，覆盖多个桶
+        long next() {
+            next = next * 31 % 1_048_573L + 1_000L;
+            return next;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        histogram = new LatencyHistogram();
+        timer = Timer.builder("bench.latency")
+                .publishPercentileHistogram()
+                .register(new SimpleMeterRegistry());
+    }
+
+    @Benchmark
+    public void histogramRecord(Values values) {
+        histogram.record(values.next());
+    }
+
+    @Benchmark
+    public void micrometerTimerRecord(Values values) {
+        timer.record(values.next(), TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,37 @@
+package mxr.config;
+
+import lombok.extern.slf4j.Slf4j;
+import mxr.utils.ttl.TtlContextHolderUtil;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * TTL Agent模式配置类
+ * <p>
+ * ttl.agent.enabled=true 且以 -javaagent 加载了TTL Agent时启用Agent模式，第三方库自行创建的线程池同样可以读取上下文；
+ * 未加载Agent时打印警告并保持包装模式，不影响启动
+ * </p>
+ * @see TtlContextHolderUtil#enableAgentMode()
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(prefix = "ttl.agent", name = "enabled", havingValue = "true")
+public class TtlAgentConfig implements InitializingBean, DisposableBean {
+
+    @Override
+    public void afterPropertiesSet() {
+        if (!TtlContextHolderUtil.isAgentLoaded()) {
+            log.warn("已配置ttl.agent.enabled=true，但未通过-javaagent加载TTL Agent，继续使用包装模式");
+            return;
+        }
+        TtlContextHolderUtil.enableAgentMode();
+        log.info("已启用TTL Agent模式，所有线程池均可传递上下文");
+    }
+
+    @Override
+    public void destroy() {
+        TtlContextHolderUtil.disableAgentMode();
+    }
+}
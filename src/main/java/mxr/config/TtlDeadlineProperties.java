@@ -0,0 +1,29 @@
+package mxr.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * 请求截止时间配置
+ * <p>
+ * 对应 application.yml 中的 ttl.deadline
+ * </p>
+ */
+@Data
+@ConfigurationProperties(prefix = "ttl.deadline")
+public class TtlDeadlineProperties {
+
+    /** 是否为请求设置截止时间 */
+    private boolean enabled = true;
+
+    /** 上游传入剩余超时时长（毫秒）的请求头 */
+    private String headerName = "X-Request-Timeout";
+
+    /** 请求头缺失时的默认超时时长，为空时不设置截止时间 */
+    private Duration defaultTimeout;
+
+    /** 超时时长上限，上游传入更长的超时时长时按此截断，为空时不限制 */
+    private Duration maxTimeout;
+}
@@ -0,0 +1,74 @@
+package mxr.config;
+
+import lombok.extern.slf4j.Slf4j;
+import mxr.utils.ttl.TTLExecutorFactory;
+import mxr.utils.ttl.TtlExecutorRegistry;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * TTL线程池配置类
+ * <p>
+ * 按 ttl.executor.shared 配置创建共享TTL线程池，并注册为TTLExecutorFactory的共享线程池，
+ * 同时以{@link TtlExecutorRegistry#SHARED_ORDER}登记到注册表，容器关闭时在其他线程池之后由TtlExecutorLifecycle优雅关闭
+ * </p>
+ */
+@Slf4j
+@Configuration
+@EnableConfigurationProperties(TtlExecutorProperties.class)
+public class TtlExecutorConfig {
+
+    /**
+     * 共享TTL线程池
+     * @param properties 线程池配置
+     * @return 经过TTL包装的线程池
+     */
+    @Bean(destroyMethod = "")
+    public ExecutorService sharedTtlExecutor(TtlExecutorProperties properties) {
+        ExecutorService executor = TTLExecutorFactory.newThreadPool(
+                TTLExecutorFactory.SHARED_POOL_NAME,
+                properties.getCorePoolSize(),
+                properties.getMaxPoolSize(),
+                properties.getKeepAlive().getSeconds(),
+                createQueue(properties),
+                createRejectedHandler(properties.getRejectionPolicy()),
+                properties.getThreadPriority());
+        TTLExecutorFactory.setSharedTtlExecutor(executor);
+        TtlExecutorRegistry.register(TTLExecutorFactory.SHARED_POOL_NAME, TtlExecutorRegistry.SHARED_ORDER, executor);
+        log.info("共享TTL线程池已创建: {}", properties);
+        return executor;
+    }
+
+    private static BlockingQueue<Runnable> createQueue(TtlExecutorProperties properties) {
+        switch (properties.getQueueType()) {
+            case ARRAY:
+                return new ArrayBlockingQueue<>(properties.getQueueCapacity());
+            case SYNCHRONOUS:
+                return new SynchronousQueue<>();
+            case LINKED:
+            default:
+                return new LinkedBlockingQueue<>(properties.getQueueCapacity());
+        }
+    }
+
+    private static RejectedExecutionHandler createRejectedHandler(TtlExecutorProperties.RejectionPolicy policy) {
+        switch (policy) {
+            case ABORT:
+                return new ThreadPoolExecutor.AbortPolicy();
+            case DISCARD_OLDEST:
+                return new ThreadPoolExecutor.DiscardOldestPolicy();
+            case CALLER_RUNS:
+            default:
+                return new ThreadPoolExecutor.CallerRunsPolicy();
+        }
+    }
+}
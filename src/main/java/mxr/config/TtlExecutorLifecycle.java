@@ -0,0 +1,66 @@
+package mxr.config;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import mxr.utils.ttl.TtlExecutorRegistry;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 容器关闭时按顺序优雅关闭TtlExecutorRegistry中登记的线程池
+ * <p>
+ * 阶段低于Web服务器的优雅关闭与停止阶段，Web服务器不再接收请求、处理中的请求结束后才关闭线程池，
+ * 请求中提交的任务仍可执行完；容器启动失败时没有stop阶段，在销毁时立即关闭
+ * </p>
+ * @see TtlExecutorRegistry#shutdownAll(long, TimeUnit)
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@EnableConfigurationProperties(TtlShutdownProperties.class)
+public class TtlExecutorLifecycle implements SmartLifecycle, DisposableBean {
+
+    /** 低于WebServerStartStopLifecycle（DEFAULT_PHASE - 1024） */
+    public static final int PHASE = SmartLifecycle.DEFAULT_PHASE - 2048;
+
+    private final TtlShutdownProperties properties;
+
+    private volatile boolean running;
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        long start = System.nanoTime();
+        log.info("开始关闭线程池: {}", TtlExecutorRegistry.threadCounts());
+        boolean drained = TtlExecutorRegistry.shutdownAll(properties.getDrainTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        log.info("线程池已关闭，耗时 {}ms，{}", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                drained ? "所有任务已执行完" : "部分任务被中断或丢弃");
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+
+    @Override
+    public void destroy() {
+        TtlExecutorRegistry.shutdownAll(0L, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,63 @@
+package mxr.config;
+
+import lombok.Data;
+import mxr.utils.ttl.TTLExecutorFactory;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * 共享TTL线程池配置
+ * <p>
+ * 对应 application.yml 中的 ttl.executor.shared，未配置的项使用按CPU核数计算的默认值
+ * </p>
+ */
+@Data
+@ConfigurationProperties(prefix = "ttl.executor.shared")
+public class TtlExecutorProperties {
+
+    /** 核心线程数，默认CPU核数 */
+    private int corePoolSize = TTLExecutorFactory.DEFAULT_CORE_POOL_SIZE;
+
+    /** 最大线程数，默认CPU核数的2倍 */
+    private int maxPoolSize = TTLExecutorFactory.DEFAULT_MAX_POOL_SIZE;
+
+    /** 队列类型 */
+    private QueueType queueType = QueueType.LINKED;
+
+    /** 队列容量，SYNCHRONOUS队列忽略该值 */
+    private int queueCapacity = TTLExecutorFactory.DEFAULT_QUEUE_CAPACITY;
+
+    /** 非核心线程空闲存活时间 */
+    private Duration keepAlive = Duration.ofSeconds(TTLExecutorFactory.DEFAULT_KEEP_ALIVE_SECONDS);
+
+    /** 拒绝策略 */
+    private RejectionPolicy rejectionPolicy = RejectionPolicy.CALLER_RUNS;
+
+    /** 线程优先级 */
+    private int threadPriority = Thread.NORM_PRIORITY;
+
+    /**
+     * 任务队列类型
+     */
+    public enum QueueType {
+        // 有界链表队列
+        LINKED,
+        // 有界数组队列
+        ARRAY,
+        // 不缓存任务，直接交给线程执行
+        SYNCHRONOUS
+    }
+
+    /**
+     * 拒绝策略
+     */
+    public enum RejectionPolicy {
+        // 由提交任务的线程执行
+        CALLER_RUNS,
+        // 抛出RejectedExecutionException
+        ABORT,
+        // 丢弃队列中最早的任务
+        DISCARD_OLDEST
+    }
+}
@@ -0,0 +1,32 @@
+package mxr.config;
+
+import lombok.extern.slf4j.Slf4j;
+import mxr.utils.ttl.ContextLeakDetector;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 上下文泄漏检测配置类
+ * <p>
+ * ttl.leak-detector.enabled=true 时启动检测器，指标见 /actuator/metrics/ttl.context.*
+ * </p>
+ */
+@Slf4j
+@Configuration
+@EnableConfigurationProperties(TtlLeakDetectorProperties.class)
+@ConditionalOnProperty(prefix = "ttl.leak-detector", name = "enabled", havingValue = "true")
+public class TtlLeakDetectorConfig {
+
+    /**
+     * 上下文泄漏检测器
+     * @param properties 检测配置
+     * @return 已启动的检测器，容器关闭时停止
+     */
+    @Bean(destroyMethod = "close")
+    public ContextLeakDetector contextLeakDetector(TtlLeakDetectorProperties properties) {
+        log.info("上下文泄漏检测已启用: {}", properties);
+        return ContextLeakDetector.start(properties.getStaleAfter(), properties.getSampleInterval());
+    }
+}
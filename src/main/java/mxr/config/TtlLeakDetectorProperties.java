@@ -0,0 +1,26 @@
+package mxr.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * 上下文泄漏检测配置
+ * <p>
+ * 对应 application.yml 中的 ttl.leak-detector，默认关闭
+ * </p>
+ */
+@Data
+@ConfigurationProperties(prefix = "ttl.leak-detector")
+public class TtlLeakDetectorProperties {
+
+    /** 是否启用 */
+    private boolean enabled = false;
+
+    /** 上下文绑定超过该时长仍未清除即视为疑似泄漏 */
+    private Duration staleAfter = Duration.ofMinutes(1);
+
+    /** 采样间隔 */
+    private Duration sampleInterval = Duration.ofSeconds(30);
+}
@@ -0,0 +1,42 @@
+package mxr.config;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import mxr.utils.ttl.ContextMdcSync;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 上下文同步到MDC的配置类
+ * <p>
+ * ttl.mdc.enabled=true 时把 ttl.mdc.keys 中的上下文属性在任务回放时写入工作线程的MDC，任务结束后恢复
+ * </p>
+ * @see ContextMdcSync
+ */
+@Slf4j
+@Configuration
+@RequiredArgsConstructor
+@EnableConfigurationProperties(TtlMdcProperties.class)
+@ConditionalOnProperty(prefix = "ttl.mdc", name = "enabled", havingValue = "true")
+public class TtlMdcConfig implements InitializingBean, DisposableBean {
+
+    private final TtlMdcProperties properties;
+
+    @Override
+    public void afterPropertiesSet() {
+        if (properties.getKeys().isEmpty()) {
+            log.warn("已配置ttl.mdc.enabled=true，但ttl.mdc.keys为空，不同步MDC");
+            return;
+        }
+        ContextMdcSync.install(properties.getKeys());
+        log.info("上下文同步到MDC已启用: {}", properties.getKeys());
+    }
+
+    @Override
+    public void destroy() {
+        ContextMdcSync.uninstall();
+    }
+}
@@ -0,0 +1,24 @@
+package mxr.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 上下文同步到MDC的配置
+ * <p>
+ * 对应 application.yml 中的 ttl.mdc，默认关闭
+ * </p>
+ */
+@Data
+@ConfigurationProperties(prefix = "ttl.mdc")
+public class TtlMdcProperties {
+
+    /** 是否启用 */
+    private boolean enabled = false;
+
+    /** 同步到MDC的上下文key，同时作为MDC的key */
+    private List<String> keys = new ArrayList<>();
+}
@@ -0,0 +1,84 @@
+package mxr.config;
+
+import mxr.filter.ContextExchangeFilterFunction;
+import mxr.interceptor.ContextPropagationInterceptor;
+import mxr.interceptor.ContextRestTemplateInterceptor;
+import mxr.utils.ttl.ContextCodec;
+import mxr.utils.ttl.ContextPropagator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.client.RestTemplateCustomizer;
+import org.springframework.boot.web.reactive.function.client.WebClientCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * 上下文跨进程传递配置类
+ * <p>
+ * 通过RestTemplateBuilder创建的RestTemplate与通过WebClient.Builder创建的WebClient自动携带上下文请求头，
+ * 只发送 ttl.propagation.keys 中声明的属性，默认不发送；Servlet入站请求在Controller执行前解码 ttl.propagation.inbound-keys 中声明的属性，默认不接收。启用 ttl.deadline 时截止时间以剩余超时时长写入 ttl.deadline.header-name，
+ * 不经上下文请求头传递。可通过 ttl.propagation.enabled=false 关闭
+ * </p>
+ */
+@Configuration
+@EnableConfigurationProperties({TtlPropagationProperties.class, TtlDeadlineProperties.class})
+@ConditionalOnProperty(prefix = "ttl.propagation", name = "enabled", matchIfMissing = true)
+public class TtlPropagationConfig {
+
+    @Bean
+    public ContextPropagator contextPropagator(TtlPropagationProperties properties,
+                                               TtlDeadlineProperties deadlineProperties) {
+        ContextCodec codec = new ContextCodec(properties.getCompressThreshold(), properties.getMaxEncodedLength());
+        String deadlineHeader = deadlineProperties.isEnabled() ? deadlineProperties.getHeaderName() : null;
+        return new ContextPropagator(properties.getHeaderName(), codec, properties.getKeys(),
+                properties.getInboundKeys(), deadlineHeader);
+    }
+
+    @Bean
+    public RestTemplateCustomizer contextRestTemplateCustomizer(ContextPropagator propagator) {
+        ContextRestTemplateInterceptor interceptor = new ContextRestTemplateInterceptor(propagator);
+        return restTemplate -> restTemplate.getInterceptors().add(interceptor);
+    }
+
+    /**
+     * WebClient出站
+     */
+    @Configuration
+    @ConditionalOnClass(name = "org.springframework.web.reactive.function.client.WebClient")
+    static class WebClientPropagationConfig {
+
+        @Bean
+        public WebClientCustomizer contextWebClientCustomizer(ContextPropagator propagator) {
+            ContextExchangeFilterFunction filter = new ContextExchangeFilterFunction(propagator);
+            return builder -> builder.filter(filter);
+        }
+    }
+
+    /**
+     * Servlet入站，排在请求线程拦截器之后；未配置 ttl.propagation.inbound-keys 时不注册
+     */
+    @Configuration
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    static class ServletPropagationConfig implements WebMvcConfigurer {
+
+        private final ContextPropagator propagator;
+
+        ServletPropagationConfig(ContextPropagator propagator) {
+            this.propagator = propagator;
+        }
+
+        @Override
+        public void addInterceptors(InterceptorRegistry registry) {
+            if (!propagator.acceptsInbound()) {
+                return;
+            }
+            registry.addInterceptor(new ContextPropagationInterceptor(propagator))
+                    .addPathPatterns("/**")
+                    .order(1);
+        }
+    }
+}
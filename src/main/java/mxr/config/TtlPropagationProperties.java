@@ -0,0 +1,38 @@
+package mxr.config;
+
+import lombok.Data;
+import mxr.utils.ttl.ContextCodec;
+import mxr.utils.ttl.ContextPropagator;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 上下文跨进程传递配置
+ * <p>
+ * 对应 application.yml 中的 ttl.propagation
+ * </p>
+ */
+@Data
+@ConfigurationProperties(prefix = "ttl.propagation")
+public class TtlPropagationProperties {
+
+    /** 是否启用 */
+    private boolean enabled = true;
+
+    /** 请求头名称 */
+    private String headerName = ContextPropagator.DEFAULT_HEADER_NAME;
+
+    /** 出站传递的key，客户端也用于调用第三方服务，只发送声明的key，为空时不发送任何属性 */
+    private List<String> keys = new ArrayList<>();
+
+    /** 入站接收的key，与出站分开声明，为空时不接收任何属性 */
+    private List<String> inboundKeys = new ArrayList<>();
+
+    /** 编码负载超过该字节数时尝试压缩，0表示不压缩 */
+    private int compressThreshold = ContextCodec.DEFAULT_COMPRESS_THRESHOLD;
+
+    /** 入站请求头的最大长度，超过时忽略 */
+    private int maxEncodedLength = ContextCodec.DEFAULT_MAX_ENCODED_LENGTH;
+}
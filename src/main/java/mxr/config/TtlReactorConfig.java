@@ -0,0 +1,78 @@
+package mxr.config;
+
+import lombok.extern.slf4j.Slf4j;
+import mxr.filter.ReactiveRequestContextFilter;
+import mxr.utils.ttl.ContextPropagator;
+import mxr.utils.ttl.ReactorContextBridge;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.AnyNestedCondition;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Reactor上下文桥接配置类
+ * <p>
+ * 反应式Web应用注册{@link ReactiveRequestContextFilter}并安装Reactor调度钩子。
+ * 调度钩子是全局的，会包装所有提交到Reactor调度器的任务，Servlet应用默认不安装，
+ * 需要在Servlet栈中发起的反应式调用里读取上下文时通过 ttl.reactor.schedule-hook=true 开启。
+ * 可通过 ttl.reactor.enabled=false 整体关闭
+ * </p>
+ */
+@Configuration
+@ConditionalOnClass(name = "reactor.core.publisher.Mono")
+@ConditionalOnProperty(prefix = "ttl.reactor", name = "enabled", matchIfMissing = true)
+public class TtlReactorConfig {
+
+    /**
+     * WebFlux请求上下文过滤器
+     */
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+    public ReactiveRequestContextFilter reactiveRequestContextFilter(ObjectProvider<ContextPropagator> propagator) {
+        return new ReactiveRequestContextFilter(propagator.getIfAvailable());
+    }
+
+    /**
+     * Reactor调度钩子，随容器启动安装、关闭卸载
+     */
+    @Slf4j
+    @Configuration
+    @Conditional(ScheduleHookCondition.class)
+    static class ScheduleHookConfig implements InitializingBean, DisposableBean {
+
+        @Override
+        public void afterPropertiesSet() {
+            ReactorContextBridge.installScheduleHook();
+            log.info("已安装Reactor调度钩子，调度任务携带上下文快照");
+        }
+
+        @Override
+        public void destroy() {
+            ReactorContextBridge.uninstallScheduleHook();
+        }
+    }
+
+    /**
+     * 反应式Web应用，或显式开启了 ttl.reactor.schedule-hook 时安装调度钩子
+     */
+    static class ScheduleHookCondition extends AnyNestedCondition {
+
+        ScheduleHookCondition() {
+            super(ConfigurationPhase.REGISTER_BEAN);
+        }
+
+        @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+        static class ReactiveWebApplication {
+        }
+
+        @ConditionalOnProperty(prefix = "ttl.reactor", name = "schedule-hook", havingValue = "true")
+        static class ScheduleHookEnabled {
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package mxr.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * 线程池优雅关闭配置
+ * <p>
+ * 对应 application.yml 中的 ttl.executor.shutdown
+ * </p>
+ */
+@Data
+@ConfigurationProperties(prefix = "ttl.executor.shutdown")
+public class TtlShutdownProperties {
+
+    /** 所有登记的线程池合计的排空时间，超时后中断执行中的任务并丢弃排队的任务 */
+    private Duration drainTimeout = Duration.ofSeconds(30);
+}
@@ -0,0 +1,25 @@
+package mxr.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Spring线程池上下文传递配置类
+ * <p>
+ * 为Spring管理的ThreadPoolTaskExecutor、ThreadPoolTaskScheduler启用上下文传递，
+ * 可通过 ttl.executor.spring.enabled=false 关闭
+ * </p>
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "ttl.executor.spring", name = "enabled", matchIfMissing = true)
+public class TtlTaskExecutorConfig {
+
+    /**
+     * 静态方法注册，避免后置处理器提前初始化配置类
+     */
+    @Bean
+    public static TtlTaskExecutorPostProcessor ttlTaskExecutorPostProcessor() {
+        return new TtlTaskExecutorPostProcessor();
+    }
+}
@@ -0,0 +1,72 @@
+package mxr.config;
+
+import lombok.extern.slf4j.Slf4j;
+import mxr.utils.ttl.TTLExecutorFactory;
+import mxr.utils.ttl.TtlThreadFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.DirectFieldAccessor;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.scheduling.concurrent.ExecutorConfigurationSupport;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Spring线程池上下文传递后置处理器
+ * <p>
+ * 在Spring管理的线程池初始化之前完成两件事：
+ * <ul>
+ *     <li>ThreadPoolTaskExecutor（包括@Async默认使用的applicationTaskExecutor）设置TaskDecorator，
+ *     每个任务在提交线程上捕获一次上下文快照；已配置的TaskDecorator会先于上下文包装执行</li>
+ *     <li>ThreadPoolTaskExecutor与ThreadPoolTaskScheduler改用{@link TtlThreadFactory}创建线程，
+ *     线程名称前缀、优先级与守护属性保持原配置，工作线程因此被getContext()视为可信线程</li>
+ * </ul>
+ * 已显式配置ThreadFactory的线程池保持原样，仅记录警告。
+ * ThreadPoolTaskScheduler没有TaskDecorator扩展点，调度任务不会捕获提交线程的上下文
+ * </p>
+ */
+@Slf4j
+public class TtlTaskExecutorPostProcessor implements BeanPostProcessor {
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) throws BeansException {
+        if (bean instanceof ThreadPoolTaskExecutor) {
+            ThreadPoolTaskExecutor executor = (ThreadPoolTaskExecutor) bean;
+            executor.setTaskDecorator(contextDecorator(
+                    (TaskDecorator) new DirectFieldAccessor(executor).getPropertyValue("taskDecorator")));
+            trustThreads(executor, beanName, executor.getThreadNamePrefix(),
+                    executor.getThreadPriority(), executor.isDaemon());
+        } else if (bean instanceof ThreadPoolTaskScheduler) {
+            ThreadPoolTaskScheduler scheduler = (ThreadPoolTaskScheduler) bean;
+            trustThreads(scheduler, beanName, scheduler.getThreadNamePrefix(),
+                    scheduler.getThreadPriority(), scheduler.isDaemon());
+        }
+        return bean;
+    }
+
+    private static TaskDecorator contextDecorator(TaskDecorator existing) {
+        if (existing == null) {
+            return TTLExecutorFactory::decorate;
+        }
+        return runnable -> TTLExecutorFactory.decorate(existing.decorate(runnable));
+    }
+
+    private static void trustThreads(ExecutorConfigurationSupport support, String beanName,
+                                     String threadNamePrefix, int priority, boolean daemon) {
+        DirectFieldAccessor accessor = new DirectFieldAccessor(support);
+        ThreadFactory threadFactory = (ThreadFactory) accessor.getPropertyValue("threadFactory");
+        // 未显式配置时ThreadFactory为线程池自身
+        if (threadFactory != support) {
+            log.warn("线程池 [{}] 已配置自定义ThreadFactory，工作线程不会被识别为可信线程", beanName);
+            return;
+        }
+        // 未显式设置名称前缀时，与线程池初始化时的默认行为一致使用Bean名称
+        if (!Boolean.TRUE.equals(accessor.getPropertyValue("threadNamePrefixSet"))) {
+            threadNamePrefix = beanName + "-";
+        }
+        support.setThreadFactory(new TtlThreadFactory(threadNamePrefix, priority, daemon));
+        log.debug("线程池 [{}] 已启用上下文传递", beanName);
+    }
+}
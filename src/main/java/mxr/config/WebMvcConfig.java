@@ -1,23 +1,36 @@
 package mxr.config;
 
 import lombok.RequiredArgsConstructor;
+import mxr.interceptor.AsyncContextInterceptor;
 import mxr.interceptor.RequestThreadInterceptor;
+import mxr.utils.ttl.ContextExecutorService;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ConcurrentTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+
 /**
  * Web MVC配置类
  * <p>
- * 用于注册请求线程拦截器，确保所有请求都能正确标记和清除请求线程
+ * 用于注册请求线程拦截器，确保所有请求都能正确标记和清除请求线程；异步请求通过异步拦截器交接上下文
  * </p>
  */
 @Configuration
+@EnableConfigurationProperties(TtlDeadlineProperties.class)
 @RequiredArgsConstructor
 public class WebMvcConfig implements WebMvcConfigurer {
 
     private final RequestThreadInterceptor requestThreadInterceptor;
 
+    private final AsyncContextInterceptor asyncContextInterceptor;
+
+    private final ExecutorService sharedTtlExecutor;
+
     /**
      * 添加拦截器
      * @param registry 拦截器注册表
@@ -28,4 +41,20 @@ public class WebMvcConfig implements WebMvcConfigurer {
         registry.addInterceptor(requestThreadInterceptor)
                 .addPathPatterns("/**");
     }
+
+    /**
+     * 注册异步请求拦截器，Callable、WebAsyncTask、DeferredResult处理期间交接上下文。
+     * Callable在共享TTL线程池中执行，替代默认每次新建线程的SimpleAsyncTaskExecutor。
+     * 不检查请求截止时间：MVC不观察任务的Future，任务被丢弃时请求只能等到异步超时
+     * @param configurer 异步请求配置
+     */
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        Executor executor = sharedTtlExecutor instanceof ContextExecutorService
+                ? ((ContextExecutorService) sharedTtlExecutor).withoutDeadline()
+                : sharedTtlExecutor;
+        configurer.setTaskExecutor(new ConcurrentTaskExecutor(executor));
+        configurer.registerCallableInterceptors(asyncContextInterceptor);
+        configurer.registerDeferredResultInterceptors(asyncContextInterceptor);
+    }
 }
@@ -3,16 +3,31 @@ package mxr.controller;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import mxr.utils.R;
+import mxr.utils.ttl.ContextDeadline;
+import mxr.utils.ttl.ContextForkJoinPool;
+import mxr.utils.ttl.ContextScope;
 import mxr.utils.ttl.TTLExecutorFactory;
 import mxr.utils.ttl.TtlContextHolderUtil;
+import mxr.utils.ttl.TtlExecutorRegistry;
+import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.context.request.async.DeferredResult;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
 
 /**
  * @ClassName TestController
@@ -26,6 +41,17 @@ import java.util.concurrent.Executors;
 @Slf4j
 public class TestController {
 
+    /** CPU密集的并行计算使用的ForkJoinPool */
+    private final ContextForkJoinPool forkJoinPool = TtlExecutorRegistry.getOrCreate("test-fork-join",
+            name -> TTLExecutorFactory.newForkJoinPool(name, Runtime.getRuntime().availableProcessors()));
+
+    /** 未经TTL包装的JDK线程池，用于对比，随注册表在容器关闭时关闭 */
+    private final ExecutorService commonExecutor =
+            TtlExecutorRegistry.getOrCreate("test-common", name -> Executors.newFixedThreadPool(2));
+
+    /** 通过RestTemplateBuilder创建，自动携带上下文请求头 */
+    private final RestTemplateBuilder restTemplateBuilder;
+
     @GetMapping("/")
     public R test(){
         ExecutorService ttlExecutor = TTLExecutorFactory.getSharedTtlExecutor();
@@ -50,12 +76,16 @@ public class TestController {
             return k;
         });
         log.info("========验证常规线程传值(定长线程池 异常)==========");
-        ExecutorService commonExecutor = Executors.newFixedThreadPool(2);
         CompletableFuture<Object> t4 = CompletableFuture.supplyAsync(() -> {
             Object k = TtlContextHolderUtil.getContext().getProperty("k");
             log.info("子线程4结果: k -> {}", k);
             return k;
         }, commonExecutor);
+        log.info("========验证TTL ForkJoinPool并行流传值==========");
+        List<Object> values = forkJoinPool.parallel(Arrays.asList(1, 2, 3, 4), stream -> stream
+                .map(i -> TtlContextHolderUtil.getContext().getProperty("k"))
+                .collect(Collectors.toList()));
+        log.info("并行流结果: k -> {}", values);
         try {
             CompletableFuture.allOf(t1,t2,t3,t4).get();
         } catch (InterruptedException e) {
@@ -66,4 +96,79 @@ public class TestController {
         return R.okResult();
     }
 
+    @GetMapping("/callable")
+    public Callable<R> callable() {
+        log.info("========验证Callable异步请求交接上下文==========");
+        TtlContextHolderUtil.getContext().addProperty("k", "v");
+        return () -> {
+            // 在MVC异步线程上执行，仍可读写请求上下文
+            TtlContextHolderUtil.getContext().addProperty("async", Thread.currentThread().getName());
+            log.info("异步线程结果: k -> {}", TtlContextHolderUtil.getContext().getProperty("k"));
+            return R.okResult();
+        };
+    }
+
+    @GetMapping("/deferred")
+    public DeferredResult<R> deferred() {
+        log.info("========验证DeferredResult异步请求交接上下文==========");
+        TtlContextHolderUtil.getContext().addProperty("k", "v");
+        DeferredResult<R> result = new DeferredResult<>();
+        CompletableFuture.runAsync(() -> result.setResult(R.okResult()), TTLExecutorFactory.getSharedTtlExecutor());
+        return result;
+    }
+
+    @GetMapping("/scope")
+    public R scope() throws InterruptedException {
+        log.info("========验证结构化并发作用域==========");
+        TtlContextHolderUtil.getContext().addProperty("k", "v");
+        try (ContextScope scope = TtlContextHolderUtil.scope(TTLExecutorFactory.getSharedTtlExecutor())) {
+            ContextScope.Subtask<Object> value = scope.fork(() -> TtlContextHolderUtil.getContext().getProperty("k"));
+            ContextScope.Subtask<Object> slow = scope.fork(() -> {
+                // 另一个子任务失败后被中断，不再占用线程
+                Thread.sleep(10_000);
+                return "slow";
+            });
+            scope.fork(() -> {
+                throw new IllegalStateException("子任务失败");
+            });
+            scope.join(3, TimeUnit.SECONDS);
+            return R.okResult(Arrays.asList(value.get(), slow.get()));
+        } catch (ExecutionException | TimeoutException e) {
+            log.info("子任务失败或超时，其余子任务已取消: {}", e.toString());
+            return R.okResult(e.toString());
+        }
+    }
+
+    @GetMapping("/deadline")
+    public R deadline() throws InterruptedException {
+        log.info("========验证请求截止时间（请求头 X-Request-Timeout: 剩余毫秒数）==========");
+        long remaining = ContextDeadline.remaining(TimeUnit.MILLISECONDS);
+        // 开始执行时已超过截止时间的任务被丢弃，Future被取消
+        Future<?> task = TTLExecutorFactory.getSharedTtlExecutor().submit(() ->
+                log.info("任务执行，剩余 {}ms", ContextDeadline.remaining(TimeUnit.MILLISECONDS)));
+        try {
+            task.get(ContextDeadline.timeout(5000, TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS);
+            return R.okResult("remaining=" + remaining + "ms, executed");
+        } catch (CancellationException | ExecutionException | TimeoutException e) {
+            return R.okResult("remaining=" + remaining + "ms, " + e.getClass().getSimpleName());
+        }
+    }
+
+    @GetMapping("/propagation")
+    public R propagation() {
+        // 只发送 ttl.propagation.keys 中声明的属性，下游只接收 ttl.propagation.inbound-keys 中声明的属性
+        log.info("========验证上下文跨进程传递==========");
+        TtlContextHolderUtil.getContext().addProperty("k", "v");
+        TtlContextHolderUtil.getContext().addProperty("userId", 10086L);
+        RestTemplate restTemplate = restTemplateBuilder.rootUri("http://localhost:8081").build();
+        Object remote = restTemplate.getForObject("/test/echo", R.class);
+        log.info("下游服务读取到的上下文: {}", remote);
+        return R.okResult(remote);
+    }
+
+    @GetMapping("/echo")
+    public R echo() {
+        return R.okResult(TtlContextHolderUtil.getContext().getProperties());
+    }
+
 }
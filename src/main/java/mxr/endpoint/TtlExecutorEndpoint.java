@@ -0,0 +1,88 @@
+package mxr.endpoint;
+
+import mxr.utils.ttl.LatencyHistogram;
+import mxr.utils.ttl.TaskLatencyRecorder;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TTL线程池任务耗时端点
+ * <p>
+ * GET /actuator/ttlexecutors 返回各线程池排队、执行与上下文捕获、回放、恢复耗时的百分位数（单位微秒），
+ * 统计范围为线程池创建或上次重置以来的全部任务；GET /actuator/ttlexecutors/{name} 只返回指定线程池。
+ * DELETE 同样的路径返回当前统计并清零，定期调用即得到每个区间的统计
+ * </p>
+ */
+@Component
+@Endpoint(id = "ttlexecutors")
+public class TtlExecutorEndpoint {
+
+    private static final double[] PERCENTILES = {50.0, 90.0, 99.0, 99.9};
+
+    @ReadOperation
+    public Map<String, Object> pools() {
+        return collect(false);
+    }
+
+    @ReadOperation
+    public Map<String, Object> pool(@Selector String name) {
+        TaskLatencyRecorder recorder = TaskLatencyRecorder.recorders().get(name);
+        return recorder == null ? null : describe(recorder, false);
+    }
+
+    @DeleteOperation
+    public Map<String, Object> reset() {
+        return collect(true);
+    }
+
+    @DeleteOperation
+    public Map<String, Object> resetPool(@Selector String name) {
+        TaskLatencyRecorder recorder = TaskLatencyRecorder.recorders().get(name);
+        return recorder == null ? null : describe(recorder, true);
+    }
+
+    private Map<String, Object> collect(boolean reset) {
+        Map<String, Object> result = new TreeMap<>();
+        TaskLatencyRecorder.recorders().forEach((name, recorder) -> result.put(name, describe(recorder, reset)));
+        return result;
+    }
+
+    private Map<String, Object> describe(TaskLatencyRecorder recorder, boolean reset) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("queueWait", describe(recorder.getQueueWait(), reset));
+        result.put("execution", describe(recorder.getExecution(), reset));
+        result.put("capture", describe(recorder.getCapture(), reset));
+        result.put("replay", describe(recorder.getReplay(), reset));
+        result.put("restore", describe(recorder.getRestore(), reset));
+        // 只有调度线程池的周期任务记录延迟与漂移
+        if (recorder.getLateness().totalCount() > 0) {
+            result.put("lateness", describe(recorder.getLateness(), reset));
+            result.put("drift", describe(recorder.getDrift(), reset));
+        }
+        return result;
+    }
+
+    private Map<String, Object> describe(LatencyHistogram histogram, boolean reset) {
+        LatencyHistogram.Snapshot snapshot = reset ? histogram.snapshotAndReset() : histogram.snapshot();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("count", snapshot.getCount());
+        result.put("mean", micros(snapshot.getMean()));
+        for (double percentile : PERCENTILES) {
+            result.put("p" + String.valueOf(percentile).replace(".0", ""), micros(snapshot.getValueAtPercentile(percentile)));
+        }
+        result.put("max", micros(snapshot.getMax()));
+        return result;
+    }
+
+    private static double micros(double nanos) {
+        return Math.round(nanos / TimeUnit.MICROSECONDS.toNanos(1) * 1000.0) / 1000.0;
+    }
+}
@@ -0,0 +1,53 @@
+package mxr.filter;
+
+import mxr.utils.ttl.TtlContextHolderUtil;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * 请求上下文清理过滤器
+ * <p>
+ * 位于过滤器链最外层，在finally中清除请求线程标记与上下文。
+ * 拦截器未执行（例如在其他过滤器或DispatcherServlet之前抛出异常）、错误转发、异步转发等路径上
+ * 也能保证Tomcat线程归还线程池前不残留上一次请求的上下文
+ * </p>
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ContextCleanupFilter extends OncePerRequestFilter {
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            TtlContextHolderUtil.clearRequestThreadMark();
+            TtlContextHolderUtil.clearContext();
+        }
+    }
+
+    /**
+     * 异步转发的线程同样需要清理
+     */
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    /**
+     * 错误转发的线程同样需要清理
+     */
+    @Override
+    protected boolean shouldNotFilterErrorDispatch() {
+        return false;
+    }
+}
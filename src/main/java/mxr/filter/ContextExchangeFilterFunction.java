@@ -0,0 +1,53 @@
+package mxr.filter;
+
+import lombok.RequiredArgsConstructor;
+import mxr.utils.ttl.BaseContext;
+import mxr.utils.ttl.ContextPropagator;
+import mxr.utils.ttl.ReactorContextBridge;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+
+/**
+ * WebClient出站上下文过滤器
+ * <p>
+ * 优先编码Reactor Context中的上下文（WebFlux请求），否则编码订阅线程可见的上下文（Servlet请求线程、TTL线程池）；
+ * 截止时间换算为剩余超时时长写入超时请求头。调用方已显式设置的请求头保持不变
+ * </p>
+ */
+@RequiredArgsConstructor
+public class ContextExchangeFilterFunction implements ExchangeFilterFunction {
+
+    private final ContextPropagator propagator;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        String deadlineHeader = propagator.getDeadlineHeaderName();
+        boolean writeContext = !request.headers().containsKey(propagator.getHeaderName());
+        boolean writeDeadline = deadlineHeader != null && !request.headers().containsKey(deadlineHeader);
+        if (!writeContext && !writeDeadline) {
+            return next.exchange(request);
+        }
+        return Mono.deferContextual(view -> {
+            BaseContext<Object> context = (BaseContext<Object>) view.getOrDefault(ReactorContextBridge.CONTEXT_KEY, null);
+            String encoded = !writeContext ? null
+                    : context != null ? propagator.encode(context) : propagator.encodeCurrent();
+            String remaining = !writeDeadline ? null
+                    : context != null ? propagator.encodeDeadline(context) : propagator.encodeCurrentDeadline();
+            if (encoded == null && remaining == null) {
+                return next.exchange(request);
+            }
+            ClientRequest.Builder builder = ClientRequest.from(request);
+            if (encoded != null) {
+                builder.header(propagator.getHeaderName(), encoded);
+            }
+            if (remaining != null) {
+                builder.header(deadlineHeader, remaining);
+            }
+            return next.exchange(builder.build());
+        });
+    }
+}
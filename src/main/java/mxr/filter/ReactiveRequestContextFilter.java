@@ -0,0 +1,59 @@
+package mxr.filter;
+
+import mxr.utils.ttl.BaseContext;
+import mxr.utils.ttl.ContextPropagator;
+import mxr.utils.ttl.CopyOnWriteContextImpl;
+import mxr.utils.ttl.ReactorContextBridge;
+import org.springframework.core.Ordered;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+/**
+ * WebFlux请求上下文过滤器，对应Servlet栈的RequestThreadInterceptor
+ * <p>
+ * 为每个请求创建新的上下文并写入Reactor Context，请求处理链的订阅过程在请求作用域内执行，
+ * Controller方法体内可以照常通过TtlContextHolderUtil读写上下文。上下文随Reactor Context结束，不需要清理线程。
+ * 线程切换之后继续读写上下文时，使用{@link ReactorContextBridge#restore(Mono)}重新进入请求作用域。
+ * 配置了{@link ContextPropagator}时，上游服务通过请求头传入的上下文在请求作用域内解码写入
+ * </p>
+ */
+public class ReactiveRequestContextFilter implements WebFilter, Ordered {
+
+    private final ContextPropagator propagator;
+
+    public ReactiveRequestContextFilter() {
+        this(null);
+    }
+
+    public ReactiveRequestContextFilter(ContextPropagator propagator) {
+        this.propagator = propagator;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        BaseContext<Object> context = new CopyOnWriteContextImpl<>();
+        return ReactorContextBridge.callInScope(context, () -> {
+                    decodeInbound(exchange, context);
+                    return chain.filter(exchange);
+                })
+                .transform(ReactorContextBridge::restore)
+                .contextWrite(ReactorContextBridge.contextWrite(context));
+    }
+
+    private void decodeInbound(ServerWebExchange exchange, BaseContext<Object> context) {
+        if (propagator == null) {
+            return;
+        }
+        String encoded = exchange.getRequest().getHeaders().getFirst(propagator.getHeaderName());
+        if (encoded != null && !encoded.isEmpty()) {
+            propagator.decodeInto(encoded, context);
+        }
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+}
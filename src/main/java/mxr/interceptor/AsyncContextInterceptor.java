@@ -0,0 +1,88 @@
+package mxr.interceptor;
+
+import lombok.extern.slf4j.Slf4j;
+import mxr.utils.ttl.BaseContext;
+import mxr.utils.ttl.TtlContextHolderUtil;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.context.request.async.DeferredResultProcessingInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.concurrent.Callable;
+
+/**
+ * Spring MVC异步请求的上下文交接拦截器
+ * <p>
+ * Controller返回Callable、WebAsyncTask或DeferredResult时，请求会离开当前Tomcat线程：
+ * <ul>
+ *     <li>进入异步处理前，把请求线程的上下文对象保存到请求属性中</li>
+ *     <li>Callable/WebAsyncTask在MVC异步线程池中执行期间，该线程接管上下文并被标记为请求线程，可以继续写入上下文</li>
+ *     <li>结果转发回容器线程时，由{@link RequestThreadInterceptor}通过{@link #resume(HttpServletRequest)}再次接管同一个上下文对象</li>
+ * </ul>
+ * 同一时刻只有一个线程持有请求线程身份，上下文对象本身在线程间传递，不做拷贝
+ * </p>
+ */
+@Slf4j
+@Component
+public class AsyncContextInterceptor implements CallableProcessingInterceptor, DeferredResultProcessingInterceptor {
+
+    /** 保存上下文的请求属性名 */
+    private static final String CONTEXT_ATTRIBUTE = AsyncContextInterceptor.class.getName() + ".CONTEXT";
+
+    /**
+     * 异步转发时接管进入异步处理前保存的上下文
+     * @param request 异步转发的请求
+     */
+    public static void resume(HttpServletRequest request) {
+        @SuppressWarnings("unchecked")
+        BaseContext<Object> context = (BaseContext<Object>) request.getAttribute(CONTEXT_ATTRIBUTE);
+        if (context != null) {
+            request.removeAttribute(CONTEXT_ATTRIBUTE);
+            TtlContextHolderUtil.setContext(context);
+            log.debug("线程 [{}] 已接管异步请求的上下文", Thread.currentThread().getName());
+        }
+    }
+
+    @Override
+    public <T> void beforeConcurrentHandling(NativeWebRequest request, Callable<T> task) {
+        suspend(request);
+    }
+
+    @Override
+    public <T> void beforeConcurrentHandling(NativeWebRequest request, DeferredResult<T> deferredResult) {
+        suspend(request);
+    }
+
+    /**
+     * 在MVC异步线程上执行Callable之前调用，接管上下文与请求线程身份
+     */
+    @Override
+    public <T> void preProcess(NativeWebRequest request, Callable<T> task) {
+        @SuppressWarnings("unchecked")
+        BaseContext<Object> context = (BaseContext<Object>) request.getAttribute(CONTEXT_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (context != null) {
+            TtlContextHolderUtil.setContext(context);
+        }
+        TtlContextHolderUtil.markAsRequestThread();
+        log.debug("线程 [{}] 已接管异步请求的上下文", Thread.currentThread().getName());
+    }
+
+    /**
+     * 在MVC异步线程上执行Callable之后调用（包括异常结束），交还上下文与请求线程身份
+     */
+    @Override
+    public <T> void postProcess(NativeWebRequest request, Callable<T> task, Object concurrentResult) {
+        TtlContextHolderUtil.clearRequestThreadMark();
+        TtlContextHolderUtil.clearContext();
+    }
+
+    /**
+     * 在请求线程上进入异步处理前调用，保存当前上下文对象
+     */
+    private static void suspend(NativeWebRequest request) {
+        request.setAttribute(CONTEXT_ATTRIBUTE, TtlContextHolderUtil.getContext(), RequestAttributes.SCOPE_REQUEST);
+    }
+}
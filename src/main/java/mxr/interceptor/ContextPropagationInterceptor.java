@@ -0,0 +1,35 @@
+package mxr.interceptor;
+
+import lombok.RequiredArgsConstructor;
+import mxr.utils.ttl.ContextPropagator;
+import mxr.utils.ttl.TtlContextHolderUtil;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * 入站上下文拦截器
+ * <p>
+ * 在{@link RequestThreadInterceptor}标记请求线程之后执行，把上游服务通过请求头传入的上下文写入当前请求上下文，
+ * Controller执行时即可读取。异步转发时上下文已由请求线程交接，不再重复解码
+ * </p>
+ */
+@RequiredArgsConstructor
+public class ContextPropagationInterceptor implements HandlerInterceptor {
+
+    private final ContextPropagator propagator;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (request.getDispatcherType() != DispatcherType.REQUEST) {
+            return true;
+        }
+        String encoded = request.getHeader(propagator.getHeaderName());
+        if (encoded != null && !encoded.isEmpty()) {
+            propagator.decodeInto(encoded, TtlContextHolderUtil.getContext());
+        }
+        return true;
+    }
+}
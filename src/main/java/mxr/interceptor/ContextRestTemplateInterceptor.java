@@ -0,0 +1,41 @@
+package mxr.interceptor;
+
+import lombok.RequiredArgsConstructor;
+import mxr.utils.ttl.ContextPropagator;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+
+/**
+ * RestTemplate出站上下文拦截器
+ * <p>
+ * 把当前线程可见的上下文编码后写入请求头，截止时间换算为剩余超时时长写入超时请求头；调用方已显式设置的请求头保持不变
+ * </p>
+ */
+@RequiredArgsConstructor
+public class ContextRestTemplateInterceptor implements ClientHttpRequestInterceptor {
+
+    private final ContextPropagator propagator;
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        if (!request.getHeaders().containsKey(propagator.getHeaderName())) {
+            String encoded = propagator.encodeCurrent();
+            if (encoded != null) {
+                request.getHeaders().set(propagator.getHeaderName(), encoded);
+            }
+        }
+        String deadlineHeader = propagator.getDeadlineHeaderName();
+        if (deadlineHeader != null && !request.getHeaders().containsKey(deadlineHeader)) {
+            String remaining = propagator.encodeCurrentDeadline();
+            if (remaining != null) {
+                request.getHeaders().set(deadlineHeader, remaining);
+            }
+        }
+        return execution.execute(request, body);
+    }
+}
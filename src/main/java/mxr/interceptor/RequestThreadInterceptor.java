@@ -1,41 +1,99 @@
 package mxr.interceptor;
 
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import mxr.config.TtlDeadlineProperties;
+import mxr.utils.ttl.ContextDeadline;
 import mxr.utils.ttl.TtlContextHolderUtil;
 import org.springframework.stereotype.Component;
-import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
 
+import javax.servlet.DispatcherType;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 请求线程拦截器
  * <p>
- * 自动管理请求线程的标记和清除，确保TTL上下文能正确识别请求线程
+ * 自动管理请求线程的标记和清除，确保TTL上下文能正确识别请求线程。
+ * 请求结束（包括异常结束）或转入异步处理时同时清除上下文，避免上下文随Tomcat线程复用到下一个请求。
+ * 标记后按上游传入的超时请求头或默认超时时长为请求设置{@link ContextDeadline}
  * </p>
  */
 @Slf4j
 @Component
-public class RequestThreadInterceptor implements HandlerInterceptor {
+@RequiredArgsConstructor
+public class RequestThreadInterceptor implements AsyncHandlerInterceptor {
+
+    private final TtlDeadlineProperties deadlineProperties;
 
     /**
      * 在请求处理之前执行，标记当前线程为请求线程
      */
     @Override
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // 异步处理结束后转发回容器线程，接管进入异步处理前的上下文
+        if (request.getDispatcherType() == DispatcherType.ASYNC) {
+            AsyncContextInterceptor.resume(request);
+        }
         // 标记当前线程为请求线程
         TtlContextHolderUtil.markAsRequestThread();
         log.debug("已标记线程 [{}] 为请求线程", Thread.currentThread().getName());
+        if (request.getDispatcherType() == DispatcherType.REQUEST && deadlineProperties.isEnabled()) {
+            applyDeadline(request);
+        }
         return true;
     }
 
     /**
-     * 在请求完成后执行，清除请求线程标记
+     * 设置请求截止时间，请求头的值为剩余超时时长（毫秒），格式错误时按缺失处理
+     */
+    private void applyDeadline(HttpServletRequest request) {
+        Long timeoutMillis = null;
+        String header = request.getHeader(deadlineProperties.getHeaderName());
+        if (header != null) {
+            try {
+                timeoutMillis = Math.max(0L, Long.parseLong(header.trim()));
+            } catch (NumberFormatException e) {
+                log.debug("忽略格式错误的超时请求头 {}: {}", deadlineProperties.getHeaderName(), header);
+            }
+        }
+        if (timeoutMillis == null && deadlineProperties.getDefaultTimeout() != null) {
+            timeoutMillis = deadlineProperties.getDefaultTimeout().toMillis();
+        }
+        if (timeoutMillis == null) {
+            return;
+        }
+        Duration maxTimeout = deadlineProperties.getMaxTimeout();
+        if (maxTimeout != null) {
+            timeoutMillis = Math.min(timeoutMillis, maxTimeout.toMillis());
+        }
+        ContextDeadline.set(TtlContextHolderUtil.getContext(), timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 在请求完成后执行，清除请求线程标记与上下文
      */
     @Override
     public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
-        // 清除请求线程标记
+        release();
+    }
+
+    /**
+     * 请求转入异步处理后执行，afterCompletion不会在当前线程上调用，需在此释放当前线程。
+     * 上下文对象此前已由{@link AsyncContextInterceptor}保存到请求属性中
+     */
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        release();
+    }
+
+    private static void release() {
+        // 清除请求线程标记与上下文
         TtlContextHolderUtil.clearRequestThreadMark();
-        log.debug("已清除线程 [{}] 的请求线程标记", Thread.currentThread().getName());
+        TtlContextHolderUtil.clearContext();
+        log.debug("已清除线程 [{}] 的请求线程标记与上下文", Thread.currentThread().getName());
     }
 }
@@ -2,6 +2,7 @@ package mxr.utils.ttl;
 
 import java.io.Serializable;
 import java.util.Map;
+import java.util.function.Supplier;
 
 public interface BaseContext<T> extends Serializable {
 
@@ -22,5 +23,26 @@ public interface BaseContext<T> extends Serializable {
 
 	// 移除所有变量
 	void removeAllProperties();
+
+	// 添加延迟计算的变量，首次读取时计算一次并缓存；不支持延迟计算的实现立即计算
+	default void addLazyProperty(String key, Supplier<? extends T> supplier) {
+		addProperty(key, supplier.get());
+	}
+
+	// 按类型化key获取变量
+	default <V> V get(ContextKey<V> key) {
+		return key.getType().cast(getProperty(key.getName()));
+	}
+
+	// 按类型化key添加变量
+	@SuppressWarnings("unchecked")
+	default <V> void put(ContextKey<V> key, V value) {
+		addProperty(key.getName(), (T) value);
+	}
+
+	// 按类型化key移除变量
+	default void remove(ContextKey<?> key) {
+		removeProperty(key.getName());
+	}
 }
 
@@ -0,0 +1,61 @@
+package mxr.utils.ttl;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.Callable;
+
+/**
+ * 虚拟线程模式下的上下文载体
+ * <p>
+ * 虚拟线程按任务创建、用完即弃，TTL在每个线程上维护的WeakHashMap持有者在这种场景下代价过高。
+ * 载体只在任务执行期间把上下文绑定到当前线程，任务结束即解除绑定，不经过TTL的capture/replay。
+ * Java 21且开启 --enable-preview 时使用基于ScopedValue的实现（见 src/main/java21），否则退化为普通ThreadLocal实现
+ * </p>
+ */
+interface ContextCarrier {
+
+    /**
+     * 当前线程绑定的上下文
+     * @return 未在载体中执行时返回null
+     */
+    BaseContext<Object> current();
+
+    /**
+     * 绑定上下文后执行任务，结束后恢复原绑定
+     */
+    void run(BaseContext<Object> context, Runnable task);
+
+    /**
+     * 绑定上下文后执行任务，结束后恢复原绑定
+     */
+    <V> V call(BaseContext<Object> context, Callable<V> task) throws Exception;
+
+    /**
+     * 按运行环境选择载体实现
+     */
+    static ContextCarrier load() {
+        return Loader.load();
+    }
+
+    @Slf4j
+    final class Loader {
+
+        private static final String SCOPED_VALUE_CARRIER = "mxr.utils.ttl.ScopedValueContextCarrier";
+
+        private Loader() {
+        }
+
+        static ContextCarrier load() {
+            try {
+                ContextCarrier carrier = (ContextCarrier) Class.forName(SCOPED_VALUE_CARRIER)
+                        .getDeclaredConstructor().newInstance();
+                log.debug("虚拟线程上下文载体使用ScopedValue实现");
+                return carrier;
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // 低于Java 21、未开启预览特性或未使用java21 profile构建时退化为ThreadLocal实现
+                log.debug("ScopedValue不可用，虚拟线程上下文载体使用ThreadLocal实现: {}", e.toString());
+                return new ThreadLocalContextCarrier();
+            }
+        }
+    }
+}
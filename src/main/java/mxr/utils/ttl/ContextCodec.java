@@ -0,0 +1,383 @@
+package mxr.utils.ttl;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 上下文跨进程传递的紧凑编解码器
+ * <p>
+ * 只编码字符串与基本类型（String、Integer、Long、Boolean、Double），其余类型的值直接跳过，不使用Java序列化。
+ * 编码结果为URL安全的Base64文本，可直接作为HTTP头传递。二进制格式：
+ * </p>
+ * <pre>
+ *     版本(1字节) 标志(1字节，bit0=DEFLATE压缩) 负载
+ *     负载 = 条目数(varint) { key长度(varint) key(UTF-8) 类型(1字节) 值 }*
+ *     值：STRING为长度(varint)+UTF-8；INT/LONG为zigzag varint；TRUE/FALSE无值；DOUBLE为8字节
+ * </pre>
+ * <p>
+ * 负载超过压缩阈值且压缩后更小时才压缩。解码时校验版本、长度与解压后大小，格式错误抛出IllegalArgumentException
+ * </p>
+ */
+public final class ContextCodec {
+
+    /** 当前编码版本 */
+    public static final int VERSION = 1;
+
+    /** 默认压缩阈值（字节） */
+    public static final int DEFAULT_COMPRESS_THRESHOLD = 512;
+
+    /** 默认允许解码的最大文本长度 */
+    public static final int DEFAULT_MAX_ENCODED_LENGTH = 8192;
+
+    private static final int FLAG_DEFLATE = 1;
+
+    private static final int TYPE_STRING = 1;
+
+    private static final int TYPE_INT = 2;
+
+    private static final int TYPE_LONG = 3;
+
+    private static final int TYPE_TRUE = 4;
+
+    private static final int TYPE_FALSE = 5;
+
+    private static final int TYPE_DOUBLE = 6;
+
+    /** 解压后负载与编码文本长度的最大倍数，防止压缩炸弹 */
+    private static final int MAX_INFLATE_RATIO = 16;
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final int compressThreshold;
+
+    private final int maxEncodedLength;
+
+    public ContextCodec() {
+        this(DEFAULT_COMPRESS_THRESHOLD, DEFAULT_MAX_ENCODED_LENGTH);
+    }
+
+    /**
+     * @param compressThreshold 负载超过该字节数时尝试压缩，小于等于0表示不压缩
+     * @param maxEncodedLength 允许解码的最大文本长度，超过时拒绝解码
+     */
+    public ContextCodec(int compressThreshold, int maxEncodedLength) {
+        this.compressThreshold = compressThreshold;
+        this.maxEncodedLength = maxEncodedLength;
+    }
+
+    /**
+     * 编码全部属性
+     * @see #encode(Map, Predicate)
+     */
+    public String encode(Map<String, ?> properties) {
+        return encode(properties, key -> true);
+    }
+
+    /**
+     * 编码属性
+     * @param properties 上下文属性
+     * @param keyFilter 需要传递的key，先于取值判断，被过滤的延迟值不会被计算
+     * @return URL安全的Base64文本；没有可编码的属性时返回null
+     */
+    public String encode(Map<String, ?> properties, Predicate<String> keyFilter) {
+        int count = 0;
+        for (Map.Entry<String, ?> entry : properties.entrySet()) {
+            if (keyFilter.test(entry.getKey()) && isEncodable(entry.getValue())) {
+                count++;
+            }
+        }
+        if (count == 0) {
+            return null;
+        }
+        // 版本与标志位直接写在缓冲区头部，未压缩时无需再拷贝
+        Output out = new Output(128);
+        out.writeByte(VERSION);
+        out.writeByte(0);
+        out.writeVarint(count);
+        for (Map.Entry<String, ?> entry : properties.entrySet()) {
+            if (keyFilter.test(entry.getKey()) && isEncodable(entry.getValue())) {
+                writeEntry(out, entry.getKey(), entry.getValue());
+            }
+        }
+        byte[] bytes = out.buf;
+        int length = out.size;
+        if (compressThreshold > 0 && length - 2 > compressThreshold) {
+            byte[] deflated = deflate(bytes, 2, length - 2);
+            if (deflated.length < length - 2) {
+                bytes = new byte[deflated.length + 2];
+                bytes[0] = (byte) VERSION;
+                bytes[1] = (byte) FLAG_DEFLATE;
+                System.arraycopy(deflated, 0, bytes, 2, deflated.length);
+                length = bytes.length;
+            }
+        }
+        ByteBuffer encoded = ENCODER.encode(ByteBuffer.wrap(bytes, 0, length));
+        return new String(encoded.array(), 0, encoded.remaining(), StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * 解码
+     * @param encoded {@link #encode(Map)}的结果
+     * @return 按编码顺序排列的属性
+     * @throws IllegalArgumentException 版本不支持、超出长度限制或格式错误时抛出
+     */
+    public Map<String, Object> decode(String encoded) {
+        if (encoded.length() > maxEncodedLength) {
+            throw new IllegalArgumentException("上下文编码长度 " + encoded.length() + " 超过限制 " + maxEncodedLength);
+        }
+        byte[] bytes = DECODER.decode(encoded);
+        if (bytes.length < 2) {
+            throw new IllegalArgumentException("上下文编码不完整");
+        }
+        if (bytes[0] != VERSION) {
+            throw new IllegalArgumentException("不支持的上下文编码版本: " + bytes[0]);
+        }
+        Input in;
+        if ((bytes[1] & FLAG_DEFLATE) != 0) {
+            byte[] inflated = inflate(bytes, 2, bytes.length - 2, maxEncodedLength * MAX_INFLATE_RATIO);
+            in = new Input(inflated, 0, inflated.length);
+        } else {
+            in = new Input(bytes, 2, bytes.length);
+        }
+        int count = in.readVarint();
+        Map<String, Object> properties = new LinkedHashMap<>(Math.min(count, 64) * 2);
+        for (int i = 0; i < count; i++) {
+            String key = in.readString();
+            properties.put(key, in.readValue());
+        }
+        return properties;
+    }
+
+    private static boolean isEncodable(Object value) {
+        return value instanceof String || value instanceof Integer || value instanceof Long
+                || value instanceof Boolean || value instanceof Double;
+    }
+
+    private static void writeEntry(Output out, String key, Object value) {
+        out.writeString(key);
+        if (value instanceof String) {
+            out.writeByte(TYPE_STRING);
+            out.writeString((String) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(TYPE_INT);
+            out.writeVarint(zigzag((Integer) value));
+        } else if (value instanceof Long) {
+            out.writeByte(TYPE_LONG);
+            out.writeVarint(zigzag((Long) value));
+        } else if (value instanceof Boolean) {
+            out.writeByte((Boolean) value ? TYPE_TRUE : TYPE_FALSE);
+        } else {
+            out.writeByte(TYPE_DOUBLE);
+            out.writeFixed64(Double.doubleToRawLongBits((Double) value));
+        }
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static byte[] deflate(byte[] data, int offset, int length) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(data, offset, length);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(length);
+            byte[] buffer = new byte[Math.min(length, 1024)];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] data, int offset, int length, int maxLength) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data, offset, length);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(length * 4);
+            byte[] buffer = new byte[1024];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalArgumentException("上下文压缩数据不完整");
+                }
+                if (out.size() + n > maxLength) {
+                    throw new IllegalArgumentException("上下文解压后超过限制 " + maxLength);
+                }
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("上下文压缩数据格式错误", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * 可扩容的字节缓冲
+     */
+    private static final class Output {
+
+        private byte[] buf;
+
+        private int size;
+
+        private Output(int capacity) {
+            this.buf = new byte[capacity];
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > buf.length) {
+                byte[] grown = new byte[Math.max(buf.length << 1, size + extra)];
+                System.arraycopy(buf, 0, grown, 0, size);
+                buf = grown;
+            }
+        }
+
+        private void writeByte(int b) {
+            ensure(1);
+            buf[size++] = (byte) b;
+        }
+
+        private void write(byte[] bytes, int offset, int length) {
+            ensure(length);
+            System.arraycopy(bytes, offset, buf, size, length);
+            size += length;
+        }
+
+        private void writeVarint(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buf[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buf[size++] = (byte) value;
+        }
+
+        private void writeFixed64(long value) {
+            ensure(8);
+            for (int i = 0; i < 8; i++) {
+                buf[size++] = (byte) (value >>> (i * 8));
+            }
+        }
+
+        private void writeString(String value) {
+            int length = value.length();
+            // ASCII直接写入，避免getBytes分配临时数组
+            boolean ascii = true;
+            for (int i = 0; i < length; i++) {
+                if (value.charAt(i) >= 0x80) {
+                    ascii = false;
+                    break;
+                }
+            }
+            if (!ascii) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                writeVarint(bytes.length);
+                write(bytes, 0, bytes.length);
+                return;
+            }
+            writeVarint(length);
+            ensure(length);
+            for (int i = 0; i < length; i++) {
+                buf[size++] = (byte) value.charAt(i);
+            }
+        }
+    }
+
+    /**
+     * 带边界检查的字节读取
+     */
+    private static final class Input {
+
+        private final byte[] buf;
+
+        private final int limit;
+
+        private int pos;
+
+        private Input(byte[] buf, int offset, int limit) {
+            this.buf = buf;
+            this.pos = offset;
+            this.limit = limit;
+        }
+
+        private int readByte() {
+            if (pos >= limit) {
+                throw new IllegalArgumentException("上下文编码不完整");
+            }
+            return buf[pos++] & 0xFF;
+        }
+
+        private long readVarintLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("上下文编码中的varint格式错误");
+        }
+
+        private int readVarint() {
+            long value = readVarintLong();
+            if (value < 0 || value > limit) {
+                throw new IllegalArgumentException("上下文编码中的长度非法: " + value);
+            }
+            return (int) value;
+        }
+
+        private String readString() {
+            int length = readVarint();
+            if (length > limit - pos) {
+                throw new IllegalArgumentException("上下文编码不完整");
+            }
+            String value = new String(buf, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+            return value;
+        }
+
+        private Object readValue() {
+            int type = readByte();
+            switch (type) {
+                case TYPE_STRING:
+                    return readString();
+                case TYPE_INT:
+                    return (int) unzigzag(readVarintLong());
+                case TYPE_LONG:
+                    return unzigzag(readVarintLong());
+                case TYPE_TRUE:
+                    return Boolean.TRUE;
+                case TYPE_FALSE:
+                    return Boolean.FALSE;
+                case TYPE_DOUBLE:
+                    long bits = 0;
+                    for (int i = 0; i < 8; i++) {
+                        bits |= (long) readByte() << (i * 8);
+                    }
+                    return Double.longBitsToDouble(bits);
+                default:
+                    throw new IllegalArgumentException("上下文编码中的类型未知: " + type);
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package mxr.utils.ttl;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 请求截止时间
+ * <p>
+ * 截止时间以epoch毫秒存放在上下文的{@link #KEY}中，随上下文传递到子任务；调用下游服务时换算为剩余超时时长写入超时请求头，
+ * 不经上下文请求头传递。
+ * TTL线程池在任务开始执行前检查截止时间，经execute/submit提交、在队列中等待期间已超过截止时间的任务直接丢弃（Future被取消），
+ * 不再占用工作线程，调度任务不检查；任务代码可通过{@link #timeout(long, TimeUnit)}按剩余时间收紧阻塞调用的超时
+ * </p>
+ * <pre>
+ *     long timeoutMillis = ContextDeadline.timeout(3000, TimeUnit.MILLISECONDS);
+ *     future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+ * </pre>
+ */
+public final class ContextDeadline {
+
+    /** 截止时间，epoch毫秒 */
+    public static final ContextKey<Long> KEY = ContextKey.of("ttl.deadline", Long.class);
+
+    private ContextDeadline() {
+        throw new UnsupportedOperationException("ContextDeadline类禁止实例化");
+    }
+
+    /**
+     * 按超时时长设置截止时间，已有更早的截止时间时保持不变
+     * @param context 请求上下文，需在请求线程上调用
+     * @param timeout 从现在起的超时时长
+     */
+    public static void set(BaseContext<Object> context, long timeout, TimeUnit unit) {
+        setDeadline(context, System.currentTimeMillis() + unit.toMillis(timeout));
+    }
+
+    /**
+     * 设置截止时间，已有更早的截止时间时保持不变
+     * @param context 请求上下文，需在请求线程上调用
+     * @param deadlineMillis 截止时间，epoch毫秒
+     */
+    public static void setDeadline(BaseContext<Object> context, long deadlineMillis) {
+        Long current = context.get(KEY);
+        if (current == null || deadlineMillis < current) {
+            context.put(KEY, deadlineMillis);
+        }
+    }
+
+    /**
+     * 当前上下文的截止时间
+     * @return epoch毫秒，没有截止时间或当前线程无法获取上下文时返回0
+     */
+    public static long deadlineMillis() {
+        BaseContext<Object> context = TtlContextHolderUtil.currentContextOrNull();
+        Long deadline = context == null ? null : context.get(KEY);
+        return deadline == null ? 0L : deadline;
+    }
+
+    /**
+     * 距截止时间的剩余时间
+     * @return 没有截止时间时返回Long.MAX_VALUE，已过期时返回0或负数
+     */
+    public static long remaining(TimeUnit unit) {
+        long deadline = deadlineMillis();
+        if (deadline == 0L) {
+            return Long.MAX_VALUE;
+        }
+        return unit.convert(deadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 当前上下文是否已超过截止时间
+     */
+    public static boolean isExpired() {
+        return isExpired(deadlineMillis());
+    }
+
+    /**
+     * 按剩余时间收紧超时时长
+     * @param timeout 调用方期望的超时时长
+     * @return 期望的超时时长与剩余时间中的较小值，已过期时返回0
+     */
+    public static long timeout(long timeout, TimeUnit unit) {
+        return Math.max(0L, Math.min(timeout, remaining(unit)));
+    }
+
+    /**
+     * @param deadlineMillis 截止时间，0表示没有截止时间
+     */
+    static boolean isExpired(long deadlineMillis) {
+        return deadlineMillis != 0L && System.currentTimeMillis() >= deadlineMillis;
+    }
+}
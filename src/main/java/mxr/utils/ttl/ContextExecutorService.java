@@ -0,0 +1,304 @@
+package mxr.utils.ttl;
+
+import com.alibaba.ttl.spi.TtlEnhanced;
+import com.alibaba.ttl.spi.TtlWrapper;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * 支持上下文传递的线程池包装
+ * <p>
+ * 与TtlExecutors的包装效果相同：每个提交的任务在提交线程上捕获一次上下文，在工作线程上回放并在结束后恢复。
+ * 额外为线程池命名，并把捕获、回放、排队、执行、恢复各阶段的耗时交给{@link TtlTaskListener}
+ * </p>
+ */
+public class ContextExecutorService extends AbstractExecutorService implements TtlWrapper<ExecutorService>, TtlEnhanced {
+
+    private final String name;
+
+    private final ExecutorService delegate;
+
+    protected final TtlTaskListener listener;
+
+    /**
+     * @param name 线程池名称，用于指标与日志
+     * @param delegate 被包装的线程池
+     * @param listener 任务生命周期监听器
+     */
+    public ContextExecutorService(String name, ExecutorService delegate, TtlTaskListener listener) {
+        this.name = name;
+        this.delegate = delegate;
+        this.listener = listener == null ? TtlTaskListener.NOOP : listener;
+    }
+
+    /**
+     * 线程池名称
+     */
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (command == null) {
+            throw new NullPointerException();
+        }
+        dispatch(decorate(command));
+    }
+
+    /**
+     * 不检查请求截止时间的执行入口
+     * <p>
+     * 供自行处理超时的调用方使用，例如Spring MVC的异步请求：任务在队列中过期被丢弃时MVC感知不到，
+     * 请求会一直等到异步超时，因此交给MVC的任务照常执行
+     * </p>
+     * @return 与本线程池共用工作线程与监听器的执行入口
+     */
+    public Executor withoutDeadline() {
+        return command -> {
+            if (command == null) {
+                throw new NullPointerException();
+            }
+            dispatch(decorateWithoutDeadline(command));
+        };
+    }
+
+    /**
+     * 批量提交任务，整批只在提交线程上捕获一次上下文，各任务回放时派生各自的子上下文，写入互不可见
+     * <p>
+     * 适合同一请求扇出大量任务的场景；任一任务被拒绝时取消本批已提交的任务并抛出异常
+     * </p>
+     * @param tasks 任务集合
+     * @return 与任务顺序一致的Future列表
+     */
+    public <T> List<Future<T>> submitAll(Collection<? extends Callable<T>> tasks) {
+        if (tasks == null) {
+            throw new NullPointerException();
+        }
+        Object captured = captureContext();
+        List<Future<T>> futures = new ArrayList<>(tasks.size());
+        boolean submitted = false;
+        try {
+            for (Callable<T> task : tasks) {
+                RunnableFuture<T> future = newTaskFor(task);
+                futures.add(future);
+                dispatch(decorate(future, captured));
+            }
+            submitted = true;
+            return futures;
+        } finally {
+            if (!submitted) {
+                cancelAll(futures);
+            }
+        }
+    }
+
+    /**
+     * 与{@link ExecutorService#invokeAll(Collection)}语义相同，整批只捕获一次上下文
+     */
+    @Override
+    public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks) throws InterruptedException {
+        List<Future<T>> futures = submitAll(tasks);
+        boolean done = false;
+        try {
+            for (Future<T> future : futures) {
+                if (!future.isDone()) {
+                    try {
+                        future.get();
+                    } catch (CancellationException | ExecutionException ignore) {
+                        // 结果由调用方通过Future获取
+                    }
+                }
+            }
+            done = true;
+            return futures;
+        } finally {
+            if (!done) {
+                cancelAll(futures);
+            }
+        }
+    }
+
+    /**
+     * 与{@link ExecutorService#invokeAll(Collection, long, TimeUnit)}语义相同，整批只捕获一次上下文
+     */
+    @Override
+    public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        List<Future<T>> futures = submitAll(tasks);
+        boolean done = false;
+        try {
+            for (Future<T> future : futures) {
+                if (!future.isDone()) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0L) {
+                        return futures;
+                    }
+                    try {
+                        future.get(remaining, TimeUnit.NANOSECONDS);
+                    } catch (CancellationException | ExecutionException ignore) {
+                        // 结果由调用方通过Future获取
+                    } catch (TimeoutException e) {
+                        return futures;
+                    }
+                }
+            }
+            done = true;
+            return futures;
+        } finally {
+            // 超时或中断时取消未完成的任务
+            if (!done) {
+                cancelAll(futures);
+            }
+        }
+    }
+
+    /**
+     * 按块并行映射列表元素，整批只捕获一次上下文
+     * <p>
+     * 每chunkSize个元素作为一个任务，结果顺序与输入一致；任一块失败时取消其余任务并抛出该异常
+     * </p>
+     * <pre>
+     *     List&lt;User&gt; users = executor.parallelMap(ids, userClient::get, 20);
+     * </pre>
+     * @param source 输入列表
+     * @param mapper 映射函数，在工作线程上执行，可以读取提交线程的上下文
+     * @param chunkSize 每个任务处理的元素个数
+     * @return 映射结果
+     * @throws ExecutionException 映射函数抛出异常时抛出
+     * @throws InterruptedException 等待结果时被中断
+     */
+    public <T, R> List<R> parallelMap(List<T> source, Function<? super T, ? extends R> mapper, int chunkSize)
+            throws InterruptedException, ExecutionException {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize必须大于0");
+        }
+        int size = source.size();
+        List<Callable<List<R>>> chunks = new ArrayList<>((size + chunkSize - 1) / chunkSize);
+        for (int from = 0; from < size; from += chunkSize) {
+            List<T> chunk = source.subList(from, Math.min(size, from + chunkSize));
+            chunks.add(() -> {
+                List<R> mapped = new ArrayList<>(chunk.size());
+                for (T item : chunk) {
+                    mapped.add(mapper.apply(item));
+                }
+                return mapped;
+            });
+        }
+        List<Future<List<R>>> futures = submitAll(chunks);
+        List<R> result = new ArrayList<>(size);
+        boolean done = false;
+        try {
+            for (Future<List<R>> future : futures) {
+                result.addAll(future.get());
+            }
+            done = true;
+            return result;
+        } finally {
+            if (!done) {
+                cancelAll(futures);
+            }
+        }
+    }
+
+    /**
+     * 包装提交的任务，默认在提交线程上捕获TTL上下文
+     * @param command 提交的任务
+     * @return 实际交给被包装线程池执行的任务
+     */
+    protected Runnable decorate(Runnable command) {
+        return command instanceof ContextTask ? command : ContextTask.of(command, listener);
+    }
+
+    /**
+     * 包装不检查截止时间的任务
+     * @see #withoutDeadline()
+     */
+    protected Runnable decorateWithoutDeadline(Runnable command) {
+        return command instanceof ContextTask ? command : ContextTask.withoutDeadline(command, listener);
+    }
+
+    /**
+     * 在提交线程上捕获一次上下文，供批量提交的任务共享
+     * @return 交给{@link #decorate(Runnable, Object)}的快照
+     */
+    protected Object captureContext() {
+        return ContextTask.capture(listener);
+    }
+
+    /**
+     * 使用已捕获的上下文包装任务
+     * @param command 提交的任务
+     * @param captured {@link #captureContext()}的返回值
+     * @return 实际交给被包装线程池执行的任务
+     */
+    protected Runnable decorate(Runnable command, Object captured) {
+        return ContextTask.of(command, listener, captured);
+    }
+
+    /**
+     * 把已包装的任务交给被包装的线程池，在提交线程上调用
+     * @param task {@link #decorate(Runnable)}或{@link #decorate(Runnable, Object)}的返回值
+     */
+    protected void dispatch(Runnable task) {
+        delegate.execute(task);
+    }
+
+    private static void cancelAll(List<? extends Future<?>> futures) {
+        for (Future<?> future : futures) {
+            future.cancel(true);
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+        listener.onShutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        List<Runnable> pending = delegate.shutdownNow();
+        listener.onShutdown();
+        return pending;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return delegate.awaitTermination(timeout, unit);
+    }
+
+    @Override
+    public ExecutorService unwrap() {
+        return delegate;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "(" + name + ") - " + delegate;
+    }
+}
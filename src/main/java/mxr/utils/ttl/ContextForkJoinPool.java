@@ -0,0 +1,81 @@
+package mxr.utils.ttl;
+
+import com.alibaba.ttl.spi.TtlEnhanced;
+
+import java.util.Collection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 支持上下文传递的ForkJoinPool包装
+ * <p>
+ * execute/submit提交的任务与{@link ContextExecutorService}一样在提交线程上捕获上下文，
+ * 因此 {@code CompletableFuture.supplyAsync(supplier, pool)} 可以读取到请求上下文。
+ * 工作线程实现了{@link TtlTrustedThread}，且不会继承创建时所在线程的上下文。
+ * </p>
+ * <p>
+ * 任务内fork出的子任务可能被其他工作线程窃取，需按以下方式保证子任务也能读取上下文：
+ * <ul>
+ *     <li>并行流：使用{@link #parallel(Collection, Function)}，数据源的每一段在处理前回放上下文</li>
+ *     <li>递归任务：继承{@link com.alibaba.ttl.TtlRecursiveTask}/{@link com.alibaba.ttl.TtlRecursiveAction}，
+ *     子任务在父任务的compute中创建时捕获上下文，并通过{@link #invoke(ForkJoinTask)}提交根任务</li>
+ * </ul>
+ * 任务的拆分与窃取方式不受影响，CPU密集的并行计算可以使用全部工作线程
+ * </p>
+ */
+public class ContextForkJoinPool extends ContextExecutorService {
+
+    private final ForkJoinPool forkJoinPool;
+
+    /**
+     * @param name 线程池名称
+     * @param forkJoinPool 被包装的ForkJoinPool
+     */
+    public ContextForkJoinPool(String name, ForkJoinPool forkJoinPool) {
+        super(name, forkJoinPool, TtlTaskListener.NOOP);
+        this.forkJoinPool = forkJoinPool;
+    }
+
+    /**
+     * 在线程池中执行ForkJoin任务并等待结果
+     * <p>
+     * 根任务在提交线程的上下文中执行；未继承TtlRecursiveTask的子任务被其他线程窃取时读取不到上下文
+     * </p>
+     * @param task 根任务
+     * @return 任务结果
+     */
+    public <T> T invoke(ForkJoinTask<T> task) {
+        if (task instanceof TtlEnhanced) {
+            return forkJoinPool.invoke(task);
+        }
+        ContextTask<T> contextTask = ContextTask.of(task::invoke, listener);
+        return forkJoinPool.invoke(ForkJoinTask.adapt((Callable<T>) contextTask));
+    }
+
+    /**
+     * 在线程池中以并行流处理集合并等待结果
+     * <pre>
+     *     List&lt;String&gt; names = pool.parallel(users, s -&gt; s.map(u -&gt; render(u)).collect(Collectors.toList()));
+     * </pre>
+     * @param source 数据源
+     * @param pipeline 基于并行流的处理逻辑，需在其中完成终止操作
+     * @return 处理结果
+     */
+    public <T, R> R parallel(Collection<T> source, Function<Stream<T>, R> pipeline) {
+        Stream<T> stream = StreamSupport.stream(new ContextSpliterator<>(source.spliterator()), true);
+        // 终止操作在本线程池的工作线程中执行，并行流的子任务随之在本线程池中拆分与窃取
+        ContextTask<R> contextTask = ContextTask.of(() -> pipeline.apply(stream), listener);
+        return forkJoinPool.submit((Callable<R>) contextTask).join();
+    }
+
+    /**
+     * 并行度
+     */
+    public int getParallelism() {
+        return forkJoinPool.getParallelism();
+    }
+}
@@ -0,0 +1,171 @@
+package mxr.utils.ttl;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 类型化的上下文key
+ * <p>
+ * 声明时即分配一个固定的整数槽位，{@link CopyOnWriteContextImpl}按槽位把值存放在数组中，
+ * 读写不需要计算字符串hash，也不需要调用方强制类型转换。适合租户、用户、traceId等少量固定字段，
+ * 动态key继续使用{@link BaseContext#getProperty(String)}等字符串API。
+ * </p>
+ * <p>
+ * 注册后字符串API与类型化API访问的是同一个值：{@code getProperty(key.getName())} 能读取到 {@code put(key, value)} 写入的值。
+ * key建议声明为常量，避免运行期无限制地注册新key。
+ * </p>
+ * <p>
+ * 声明时可指定{@link TransmitPolicy}，控制该属性是否以及如何传递给子任务，默认按引用传递。
+ * </p>
+ * <pre>
+ *     public static final ContextKey&lt;String&gt; TENANT_ID = ContextKey.of("tenantId", String.class);
+ * </pre>
+ * @param <T> 值类型
+ */
+public final class ContextKey<T> {
+
+    /** 已注册的key，按名称索引 */
+    private static final Map<String, ContextKey<?>> REGISTRY = new ConcurrentHashMap<>();
+
+    /** 按槽位索引的key，注册时整体替换 */
+    private static volatile ContextKey<?>[] slots = new ContextKey<?>[0];
+
+    /** 传递策略不是按引用传递的key的槽位，注册时整体替换 */
+    private static volatile int[] policySlots = new int[0];
+
+    private final String name;
+
+    private final Class<T> type;
+
+    private final int index;
+
+    private final TransmitPolicy<T> policy;
+
+    private ContextKey(String name, Class<T> type, int index, TransmitPolicy<T> policy) {
+        this.name = name;
+        this.type = type;
+        this.index = index;
+        this.policy = policy;
+    }
+
+    /**
+     * 声明类型化key，同名key重复声明时返回已注册的实例
+     * @param name key名称，同时作为字符串API的key
+     * @param type 值类型
+     * @return 类型化key
+     * @throws IllegalArgumentException 同名key已按其他类型注册时抛出
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> ContextKey<T> of(String name, Class<T> type) {
+        if (name == null || type == null) {
+            throw new IllegalArgumentException("ContextKey的名称和类型不能为空");
+        }
+        ContextKey<?> key = REGISTRY.get(name);
+        if (key == null) {
+            key = register(name, type, TransmitPolicy.byReference());
+        }
+        if (key.type != type) {
+            throw new IllegalArgumentException("ContextKey [" + name + "] 已注册为类型 " + key.type.getName());
+        }
+        return (ContextKey<T>) key;
+    }
+
+    /**
+     * 声明带传递策略的类型化key
+     * @param name key名称，同时作为字符串API的key
+     * @param type 值类型
+     * @param policy 向子任务传递的策略
+     * @return 类型化key
+     * @throws IllegalArgumentException 同名key已按其他类型或其他策略注册时抛出
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> ContextKey<T> of(String name, Class<T> type, TransmitPolicy<T> policy) {
+        if (policy == null) {
+            throw new IllegalArgumentException("ContextKey的传递策略不能为空");
+        }
+        if (name == null || type == null) {
+            throw new IllegalArgumentException("ContextKey的名称和类型不能为空");
+        }
+        ContextKey<?> key = REGISTRY.get(name);
+        if (key == null) {
+            key = register(name, type, policy);
+        }
+        if (key.type != type) {
+            throw new IllegalArgumentException("ContextKey [" + name + "] 已注册为类型 " + key.type.getName());
+        }
+        if (key.policy != policy) {
+            throw new IllegalArgumentException("ContextKey [" + name + "] 已注册为策略 " + key.policy);
+        }
+        return (ContextKey<T>) key;
+    }
+
+    /**
+     * 按名称查找已注册的key
+     * @return 未注册时返回null
+     */
+    static ContextKey<?> lookup(String name) {
+        return REGISTRY.get(name);
+    }
+
+    /**
+     * 按槽位查找已注册的key
+     */
+    static ContextKey<?> lookup(int index) {
+        return slots[index];
+    }
+
+    /**
+     * 当前已分配的槽位数，上下文按此长度分配槽位数组
+     */
+    static int slotCount() {
+        return slots.length;
+    }
+
+    /**
+     * 传递策略不是按引用传递的key的槽位，捕获快照时只需处理这些槽位
+     */
+    static int[] policySlots() {
+        return policySlots;
+    }
+
+    private static synchronized <T> ContextKey<?> register(String name, Class<T> type, TransmitPolicy<T> policy) {
+        ContextKey<?> key = REGISTRY.get(name);
+        if (key != null) {
+            return key;
+        }
+        ContextKey<?>[] current = slots;
+        key = new ContextKey<>(name, type, current.length, policy);
+        ContextKey<?>[] next = Arrays.copyOf(current, current.length + 1);
+        next[current.length] = key;
+        slots = next;
+        if (!policy.isByReference()) {
+            int[] indexes = Arrays.copyOf(policySlots, policySlots.length + 1);
+            indexes[policySlots.length] = key.index;
+            policySlots = indexes;
+        }
+        REGISTRY.put(name, key);
+        return key;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Class<T> getType() {
+        return type;
+    }
+
+    public TransmitPolicy<T> getPolicy() {
+        return policy;
+    }
+
+    int getIndex() {
+        return index;
+    }
+
+    @Override
+    public String toString() {
+        return "ContextKey(" + name + ": " + type.getSimpleName() + ")";
+    }
+}
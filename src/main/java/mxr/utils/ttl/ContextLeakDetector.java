@@ -0,0 +1,241 @@
+package mxr.utils.ttl;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 上下文泄漏检测器
+ * <p>
+ * 记录每个线程（请求线程、线程池工作线程）首次访问时创建或通过setContext绑定的根上下文，
+ * 在clearContext时移除记录。后台线程按固定间隔采样，绑定时间超过阈值仍未清除的上下文视为疑似泄漏，
+ * 以Micrometer指标报告数量、key数、近似占用字节数与最长存活时间，并对每个疑似泄漏记录一次警告日志。
+ * </p>
+ * <p>
+ * 任务执行期间由TTL回放的快照不计入，只跟踪线程自身的上下文。检测器未启动时
+ * TtlContextHolderUtil只多一次volatile读
+ * </p>
+ * <ul>
+ *     <li>ttl.context.live：仍绑定在存活线程上的上下文数</li>
+ *     <li>ttl.context.stale：疑似泄漏的上下文数</li>
+ *     <li>ttl.context.stale.keys / ttl.context.stale.bytes：疑似泄漏上下文的key总数与近似字节数</li>
+ *     <li>ttl.context.stale.max.age：疑似泄漏上下文的最长存活时间（秒）</li>
+ * </ul>
+ */
+@Slf4j
+public final class ContextLeakDetector implements AutoCloseable {
+
+    private static final String PREFIX = "ttl.context";
+
+    /** 未知类型对象的估算大小 */
+    private static final int OBJECT_BYTES = 16;
+
+    private final Map<Long, Binding> bindings = new ConcurrentHashMap<>();
+
+    private final long staleAfterNanos;
+
+    private final MeterRegistry registry;
+
+    private final List<Meter> meters = new ArrayList<>();
+
+    private final ScheduledExecutorService sampler;
+
+    private volatile Sample lastSample = new Sample(0, 0, 0, 0, 0);
+
+    private ContextLeakDetector(MeterRegistry registry, Duration staleAfter, Duration sampleInterval) {
+        this.registry = registry;
+        this.staleAfterNanos = staleAfter.toNanos();
+        meters.add(Gauge.builder(PREFIX + ".live", this, d -> d.lastSample.live)
+                .description("绑定在存活线程上的上下文数").register(registry));
+        meters.add(Gauge.builder(PREFIX + ".stale", this, d -> d.lastSample.stale)
+                .description("超过阈值仍未清除的上下文数").register(registry));
+        meters.add(Gauge.builder(PREFIX + ".stale.keys", this, d -> d.lastSample.staleKeys)
+                .description("疑似泄漏上下文的key总数").register(registry));
+        meters.add(Gauge.builder(PREFIX + ".stale.bytes", this, d -> d.lastSample.staleBytes)
+                .baseUnit("bytes").description("疑似泄漏上下文的近似占用字节数").register(registry));
+        meters.add(Gauge.builder(PREFIX + ".stale.max.age", this, d -> d.lastSample.maxAgeSeconds)
+                .baseUnit("seconds").description("疑似泄漏上下文的最长存活时间").register(registry));
+        this.sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ttl-context-leak-detector");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalNanos = sampleInterval.toNanos();
+        sampler.scheduleWithFixedDelay(this::sample, intervalNanos, intervalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 启动检测器，指标注册到全局MeterRegistry
+     * @param staleAfter 上下文绑定超过该时长仍未清除即视为疑似泄漏
+     * @param sampleInterval 采样间隔
+     * @return 已启动的检测器，关闭后停止跟踪并移除指标
+     */
+    public static ContextLeakDetector start(Duration staleAfter, Duration sampleInterval) {
+        return start(Metrics.globalRegistry, staleAfter, sampleInterval);
+    }
+
+    /**
+     * 启动检测器
+     * @param registry 指标注册表
+     * @param staleAfter 上下文绑定超过该时长仍未清除即视为疑似泄漏
+     * @param sampleInterval 采样间隔
+     * @return 已启动的检测器，关闭后停止跟踪并移除指标
+     */
+    public static ContextLeakDetector start(MeterRegistry registry, Duration staleAfter, Duration sampleInterval) {
+        ContextLeakDetector detector = new ContextLeakDetector(registry, staleAfter, sampleInterval);
+        TtlContextHolderUtil.setLeakDetector(detector);
+        return detector;
+    }
+
+    /**
+     * 当前线程绑定了新的根上下文
+     */
+    void bound(BaseContext<Object> context) {
+        Thread thread = Thread.currentThread();
+        bindings.put(thread.getId(), new Binding(thread, context));
+    }
+
+    /**
+     * 当前线程的上下文已清除
+     */
+    void released() {
+        bindings.remove(Thread.currentThread().getId());
+    }
+
+    /**
+     * 采样一次当前绑定的上下文
+     */
+    void sample() {
+        try {
+            long now = System.nanoTime();
+            int live = 0;
+            int stale = 0;
+            long staleKeys = 0;
+            long staleBytes = 0;
+            long maxAgeNanos = 0;
+            for (Map.Entry<Long, Binding> entry : bindings.entrySet()) {
+                Binding binding = entry.getValue();
+                Thread thread = binding.thread.get();
+                BaseContext<Object> context = binding.context.get();
+                if (thread == null || !thread.isAlive() || context == null) {
+                    bindings.remove(entry.getKey(), binding);
+                    continue;
+                }
+                live++;
+                long ageNanos = now - binding.boundNanos;
+                if (ageNanos < staleAfterNanos) {
+                    continue;
+                }
+                // 采样线程不能触发延迟值的计算
+                Map<String, Object> properties = context instanceof CopyOnWriteContextImpl
+                        ? ((CopyOnWriteContextImpl<Object>) context).propertyMap().asRawMap()
+                        : context.getProperties();
+                long bytes = estimateBytes(properties);
+                stale++;
+                staleKeys += properties.size();
+                staleBytes += bytes;
+                maxAgeNanos = Math.max(maxAgeNanos, ageNanos);
+                if (!binding.reported) {
+                    binding.reported = true;
+                    log.warn("线程 [{}] 的上下文已绑定 {} 秒仍未清除，疑似泄漏: keys={}, 近似 {} 字节",
+                            thread.getName(), TimeUnit.NANOSECONDS.toSeconds(ageNanos), properties.keySet(), bytes);
+                }
+            }
+            lastSample = new Sample(live, stale, staleKeys, staleBytes, TimeUnit.NANOSECONDS.toSeconds(maxAgeNanos));
+        } catch (RuntimeException e) {
+            // 采样失败不能终止定时任务
+            log.warn("上下文泄漏采样失败", e);
+        }
+    }
+
+    /**
+     * 按key与值的常见类型粗略估算上下文占用的字节数，不递归遍历对象图
+     */
+    private static long estimateBytes(Map<String, Object> properties) {
+        long bytes = 0;
+        for (Map.Entry<String, Object> entry : properties.entrySet()) {
+            bytes += estimateBytes(entry.getKey()) + estimateBytes(entry.getValue());
+        }
+        return bytes;
+    }
+
+    private static long estimateBytes(Object value) {
+        if (value instanceof LazyValue) {
+            LazyValue<?> lazy = (LazyValue<?>) value;
+            // 未计算的延迟值只计入supplier本身
+            return lazy.isComputed() ? OBJECT_BYTES + estimateBytes(lazy.get()) : OBJECT_BYTES;
+        }
+        if (value instanceof CharSequence) {
+            return 40L + ((CharSequence) value).length();
+        }
+        if (value instanceof byte[]) {
+            return OBJECT_BYTES + ((byte[]) value).length;
+        }
+        if (value instanceof Collection) {
+            return OBJECT_BYTES + (long) OBJECT_BYTES * ((Collection<?>) value).size();
+        }
+        if (value instanceof Map) {
+            return OBJECT_BYTES + 2L * OBJECT_BYTES * ((Map<?, ?>) value).size();
+        }
+        return OBJECT_BYTES;
+    }
+
+    @Override
+    public void close() {
+        TtlContextHolderUtil.setLeakDetector(null);
+        sampler.shutdownNow();
+        meters.forEach(registry::remove);
+        meters.clear();
+        bindings.clear();
+    }
+
+    private static final class Binding {
+
+        private final WeakReference<Thread> thread;
+
+        private final WeakReference<BaseContext<Object>> context;
+
+        private final long boundNanos = System.nanoTime();
+
+        private volatile boolean reported;
+
+        private Binding(Thread thread, BaseContext<Object> context) {
+            this.thread = new WeakReference<>(thread);
+            this.context = new WeakReference<>(context);
+        }
+    }
+
+    private static final class Sample {
+
+        private final int live;
+
+        private final int stale;
+
+        private final long staleKeys;
+
+        private final long staleBytes;
+
+        private final long maxAgeSeconds;
+
+        private Sample(int live, int stale, long staleKeys, long staleBytes, long maxAgeSeconds) {
+            this.live = live;
+            this.stale = stale;
+            this.staleKeys = staleKeys;
+            this.staleBytes = staleBytes;
+            this.maxAgeSeconds = maxAgeSeconds;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package mxr.utils.ttl;
+
+import com.alibaba.ttl.TransmittableThreadLocal.Transmitter;
+import org.slf4j.MDC;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Objects;
+
+/**
+ * 把上下文属性同步到SLF4J MDC
+ * <p>
+ * 注册为TTL的Transmittee：提交任务时在提交线程上读取指定key的值，任务开始执行时写入工作线程的MDC，结束后恢复工作线程原有的MDC。
+ * 只写入与工作线程当前MDC不同的key，恢复时也只还原被写入过的key；上下文中没有的key从MDC中移除。
+ * 工作线程在任务之间通常不带这些key，每个任务开始时仍会写入全部有值的key，结束时移除；
+ * 与当前MDC相同而省去写入的情况主要是CallerRuns策略下在提交线程上执行的任务，以及在已同步的任务中嵌套提交的任务。
+ * 上下文的值以{@code String.valueOf}写入MDC。
+ * </p>
+ * <p>
+ * 适用于经过TTL回放的任务（TTLExecutorFactory创建的线程池、Agent模式下的所有线程池）；
+ * 以{@link PeriodicContextPolicy#FROZEN}或{@link PeriodicContextPolicy#NONE}执行的周期任务不携带这些key，
+ * 虚拟线程执行器不经过TTL，不做同步
+ * </p>
+ */
+public final class ContextMdcSync implements Transmitter.Transmittee<String[], Object[]> {
+
+    /** 备份中表示该key没有被修改 */
+    private static final Object UNCHANGED = new Object();
+
+    private static ContextMdcSync installed;
+
+    private final String[] keys;
+
+    private final String[] empty;
+
+    private ContextMdcSync(String[] keys) {
+        this.keys = keys;
+        this.empty = new String[keys.length];
+    }
+
+    /**
+     * 注册同步，替换之前注册的同步
+     * @param keys 需要同步的上下文key，同时作为MDC的key
+     */
+    public static synchronized void install(Collection<String> keys) {
+        if (keys == null || keys.isEmpty()) {
+            throw new IllegalArgumentException("需要同步到MDC的key不能为空");
+        }
+        uninstall();
+        installed = new ContextMdcSync(new LinkedHashSet<>(keys).toArray(new String[0]));
+        Transmitter.registerTransmittee(installed);
+    }
+
+    /**
+     * 取消同步，未注册时不做任何操作
+     */
+    public static synchronized void uninstall() {
+        if (installed != null) {
+            Transmitter.unregisterTransmittee(installed);
+            installed = null;
+        }
+    }
+
+    /**
+     * 当前同步的key
+     * @return 未注册时返回空数组
+     */
+    public static synchronized String[] installedKeys() {
+        return installed == null ? new String[0] : installed.keys.clone();
+    }
+
+    @Override
+    public String[] capture() {
+        BaseContext<Object> context = TtlContextHolderUtil.currentContextOrNull();
+        if (context == null) {
+            return empty;
+        }
+        String[] values = null;
+        for (int i = 0; i < keys.length; i++) {
+            Object value = context.getProperty(keys[i]);
+            if (value != null) {
+                if (values == null) {
+                    values = new String[keys.length];
+                }
+                values[i] = String.valueOf(value);
+            }
+        }
+        return values == null ? empty : values;
+    }
+
+    @Override
+    public Object[] replay(String[] captured) {
+        Object[] backup = null;
+        for (int i = 0; i < keys.length; i++) {
+            String current = MDC.get(keys[i]);
+            if (Objects.equals(current, captured[i])) {
+                continue;
+            }
+            if (backup == null) {
+                backup = new Object[keys.length];
+                Arrays.fill(backup, UNCHANGED);
+            }
+            backup[i] = current;
+            if (captured[i] == null) {
+                MDC.remove(keys[i]);
+            } else {
+                MDC.put(keys[i], captured[i]);
+            }
+        }
+        return backup;
+    }
+
+    @Override
+    public Object[] clear() {
+        return replay(empty);
+    }
+
+    /**
+     * @param backup 为null时表示replay没有修改MDC
+     */
+    @Override
+    public void restore(Object[] backup) {
+        if (backup == null) {
+            return;
+        }
+        for (int i = 0; i < keys.length; i++) {
+            Object previous = backup[i];
+            if (previous == UNCHANGED) {
+                continue;
+            }
+            if (previous == null) {
+                MDC.remove(keys[i]);
+            } else {
+                MDC.put(keys[i], (String) previous);
+            }
+        }
+    }
+}
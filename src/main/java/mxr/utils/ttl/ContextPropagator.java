@@ -0,0 +1,187 @@
+package mxr.utils.ttl;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * 上下文跨进程传递
+ * <p>
+ * 出站时把当前上下文中允许传递的属性编码为请求头，入站时解码并写入请求上下文。
+ * 编码格式见{@link ContextCodec}。出站与入站都只处理各自声明的key，默认既不发送也不接收任何属性：
+ * 客户端同样用于调用第三方服务，未声明的属性不会随请求外发；请求头可由任意调用方构造，
+ * 接收的key不应包含本服务据以鉴权的属性；请求头由外部网关传入时应在网关处剔除。
+ * </p>
+ * <p>
+ * 截止时间{@link ContextDeadline#KEY}不经上下文请求头传递：出站时换算为剩余超时时长写入单独的超时请求头，
+ * 入站时由请求线程拦截器按超时上限截断后设置，调用方无法替换本服务的截止时间，也不受主机间时钟偏差影响
+ * </p>
+ */
+@Slf4j
+public final class ContextPropagator {
+
+    /** 默认请求头名称 */
+    public static final String DEFAULT_HEADER_NAME = "X-Ttl-Context";
+
+    private final String headerName;
+
+    private final ContextCodec codec;
+
+    private final Predicate<String> keyFilter;
+
+    private final boolean sendsOutbound;
+
+    private final Set<String> inboundKeys;
+
+    private final String deadlineHeaderName;
+
+    /**
+     * 只用于出站的传递器，不接收入站属性，不传递截止时间
+     * @param headerName 请求头名称
+     * @param codec 编解码器
+     * @param keys 出站传递的key，为空时不传递任何属性
+     */
+    public ContextPropagator(String headerName, ContextCodec codec, Collection<String> keys) {
+        this(headerName, codec, keys, null, null);
+    }
+
+    /**
+     * @param headerName 请求头名称
+     * @param codec 编解码器
+     * @param keys 出站传递的key，为空时不传递任何属性
+     * @param inboundKeys 入站接收的key，为空时不接收任何属性
+     * @param deadlineHeaderName 出站时写入剩余超时时长（毫秒）的请求头，为null时不传递截止时间
+     */
+    public ContextPropagator(String headerName, ContextCodec codec, Collection<String> keys,
+                             Collection<String> inboundKeys, String deadlineHeaderName) {
+        this.headerName = headerName;
+        this.codec = codec;
+        this.deadlineHeaderName = deadlineHeaderName;
+        this.inboundKeys = new HashSet<>();
+        if (inboundKeys != null) {
+            for (String key : inboundKeys) {
+                if (isTransmittable(key)) {
+                    this.inboundKeys.add(key);
+                }
+            }
+        }
+        Set<String> allowed = new HashSet<>();
+        if (keys != null) {
+            for (String key : keys) {
+                if (isTransmittable(key)) {
+                    allowed.add(key);
+                }
+            }
+        }
+        this.sendsOutbound = !allowed.isEmpty();
+        this.keyFilter = allowed::contains;
+    }
+
+    private static boolean isTransmittable(String key) {
+        return !ContextDeadline.KEY.getName().equals(key);
+    }
+
+    public String getHeaderName() {
+        return headerName;
+    }
+
+    /**
+     * 是否发送出站属性
+     */
+    public boolean sendsOutbound() {
+        return sendsOutbound;
+    }
+
+    /**
+     * 是否接收入站属性
+     */
+    public boolean acceptsInbound() {
+        return !inboundKeys.isEmpty();
+    }
+
+    /**
+     * 剩余超时时长请求头
+     * @return 不传递截止时间时返回null
+     */
+    public String getDeadlineHeaderName() {
+        return deadlineHeaderName;
+    }
+
+    /**
+     * 当前线程可见的截止时间换算的剩余超时时长
+     * @see #encodeDeadline(BaseContext)
+     */
+    public String encodeCurrentDeadline() {
+        return encodeDeadline(TtlContextHolderUtil.currentContextOrNull());
+    }
+
+    /**
+     * 截止时间换算的剩余超时时长（毫秒），写入{@link #getDeadlineHeaderName()}
+     * @return 不传递截止时间或没有截止时间时返回null，已过期时返回"0"
+     */
+    public String encodeDeadline(BaseContext<Object> context) {
+        if (deadlineHeaderName == null || context == null) {
+            return null;
+        }
+        Long deadline = context.get(ContextDeadline.KEY);
+        return deadline == null ? null : Long.toString(Math.max(0L, deadline - System.currentTimeMillis()));
+    }
+
+    /**
+     * 编码当前线程可见的上下文
+     * @return 当前线程没有上下文或没有可传递的属性时返回null
+     */
+    public String encodeCurrent() {
+        BaseContext<Object> context = TtlContextHolderUtil.currentContextOrNull();
+        return context == null ? null : encode(context);
+    }
+
+    /**
+     * 编码指定上下文
+     * <p>
+     * 只编码出站声明的key，声明的延迟值会为传递而触发计算
+     * </p>
+     * @return 未声明出站key或没有可传递的属性时返回null
+     */
+    public String encode(BaseContext<Object> context) {
+        if (!sendsOutbound) {
+            return null;
+        }
+        return codec.encode(context.getProperties(), keyFilter);
+    }
+
+    /**
+     * 解码请求头并写入上下文，需在请求线程（或请求作用域）内调用
+     * <p>
+     * 只写入入站接收的key，未声明接收任何key时不解码；请求头格式错误时忽略整个请求头，与ContextKey声明类型不一致的属性单独跳过
+     * </p>
+     * @param encoded 请求头的值
+     * @param context 请求上下文
+     */
+    public void decodeInto(String encoded, BaseContext<Object> context) {
+        if (inboundKeys.isEmpty()) {
+            return;
+        }
+        Map<String, Object> properties;
+        try {
+            properties = codec.decode(encoded);
+        } catch (IllegalArgumentException e) {
+            log.warn("忽略无法解码的上下文请求头 {}: {}", headerName, e.getMessage());
+            return;
+        }
+        for (Map.Entry<String, Object> entry : properties.entrySet()) {
+            if (!inboundKeys.contains(entry.getKey())) {
+                continue;
+            }
+            try {
+                context.addProperty(entry.getKey(), entry.getValue());
+            } catch (ClassCastException e) {
+                log.warn("忽略类型不匹配的上下文属性 {}: {}", entry.getKey(), e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package mxr.utils.ttl;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 支持上下文传递的调度线程池包装
+ * <p>
+ * 调度任务在提交时捕获上下文，每次执行时回放；排队耗时按预期开始时间计算，
+ * 周期任务的每次执行分别统计。周期任务每次执行时携带的上下文由{@link PeriodicContextPolicy}决定，
+ * 默认回放调度时捕获的上下文，可按线程池或按任务指定
+ * </p>
+ */
+public class ContextScheduledExecutorService extends ContextExecutorService implements ScheduledExecutorService {
+
+    private final ScheduledExecutorService delegate;
+
+    private final PeriodicContextPolicy periodicPolicy;
+
+    /**
+     * @param name 线程池名称，用于指标与日志
+     * @param delegate 被包装的调度线程池
+     * @param listener 任务生命周期监听器
+     */
+    public ContextScheduledExecutorService(String name, ScheduledExecutorService delegate, TtlTaskListener listener) {
+        this(name, delegate, listener, PeriodicContextPolicy.REPLAY);
+    }
+
+    /**
+     * @param name 线程池名称，用于指标与日志
+     * @param delegate 被包装的调度线程池
+     * @param listener 任务生命周期监听器
+     * @param periodicPolicy 周期任务默认的上下文策略
+     */
+    public ContextScheduledExecutorService(String name, ScheduledExecutorService delegate, TtlTaskListener listener,
+                                           PeriodicContextPolicy periodicPolicy) {
+        super(name, delegate, listener);
+        this.delegate = delegate;
+        this.periodicPolicy = periodicPolicy;
+    }
+
+    public PeriodicContextPolicy getPeriodicPolicy() {
+        return periodicPolicy;
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+        return delegate.schedule((Runnable) ContextTask.of(command, listener, unit.toNanos(delay), 0L), delay, unit);
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+        return delegate.schedule((Callable<V>) ContextTask.of(callable, listener, unit.toNanos(delay)), delay, unit);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+        return scheduleAtFixedRate(command, initialDelay, period, unit, periodicPolicy);
+    }
+
+    /**
+     * 按指定的上下文策略提交固定频率任务
+     * @see #scheduleAtFixedRate(Runnable, long, long, TimeUnit)
+     */
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit,
+                                                  PeriodicContextPolicy policy) {
+        return delegate.scheduleAtFixedRate(
+                ContextTask.of(command, listener, unit.toNanos(initialDelay), unit.toNanos(period), policy),
+                initialDelay, period, unit);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+        return scheduleWithFixedDelay(command, initialDelay, delay, unit, periodicPolicy);
+    }
+
+    /**
+     * 按指定的上下文策略提交固定延迟任务
+     * @see #scheduleWithFixedDelay(Runnable, long, long, TimeUnit)
+     */
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit,
+                                                     PeriodicContextPolicy policy) {
+        return delegate.scheduleWithFixedDelay(
+                ContextTask.of(command, listener, unit.toNanos(initialDelay), -unit.toNanos(delay), policy),
+                initialDelay, delay, unit);
+    }
+
+    @Override
+    public ScheduledExecutorService unwrap() {
+        return delegate;
+    }
+}
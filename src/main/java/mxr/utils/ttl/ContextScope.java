@@ -0,0 +1,251 @@
+package mxr.utils.ttl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 结构化并发作用域
+ * <p>
+ * 在作用域内fork的子任务携带当前上下文提交到TTL线程池，join等待子任务结束；
+ * 任一子任务失败（FAIL_FAST）、join超时或作用域关闭时取消其余未完成的子任务并中断正在执行的线程，
+ * 请求放弃等待后不再继续占用线程池。通过{@link TtlContextHolderUtil#scope(ExecutorService)}创建，
+ * 建议配合try-with-resources使用：
+ * </p>
+ * <pre>
+ *     try (ContextScope scope = TtlContextHolderUtil.scope(executor)) {
+ *         ContextScope.Subtask&lt;User&gt; user = scope.fork(() -&gt; userClient.get(id));
+ *         ContextScope.Subtask&lt;List&lt;Order&gt;&gt; orders = scope.fork(() -&gt; orderClient.list(id));
+ *         scope.join(3, TimeUnit.SECONDS);
+ *         return new Detail(user.get(), orders.get());
+ *     }
+ * </pre>
+ * <p>
+ * fork、join与close应在创建作用域的线程上调用
+ * </p>
+ */
+public final class ContextScope implements AutoCloseable {
+
+    /**
+     * 子任务的等待策略
+     */
+    public enum JoinPolicy {
+
+        /** 任一子任务失败时立即取消其余子任务，join抛出该失败 */
+        FAIL_FAST,
+
+        /** 等待全部子任务结束，失败由调用方通过各子任务获取 */
+        ALL_COMPLETE
+    }
+
+    private final ExecutorService executor;
+
+    private final JoinPolicy policy;
+
+    private final Object lock = new Object();
+
+    /** 已提交的子任务，受lock保护 */
+    private final List<Subtask<?>> subtasks = new ArrayList<>();
+
+    /** 未结束的子任务数，受lock保护 */
+    private int pending;
+
+    /** 第一个失败的子任务的异常，受lock保护 */
+    private Throwable failure;
+
+    private boolean closed;
+
+    ContextScope(ExecutorService executor, JoinPolicy policy) {
+        if (executor == null || policy == null) {
+            throw new NullPointerException();
+        }
+        this.executor = executor;
+        this.policy = policy;
+    }
+
+    public JoinPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * 提交子任务，在提交线程上捕获上下文
+     * @param task 子任务
+     * @return 子任务句柄，join之后通过{@link Subtask#get()}获取结果
+     * @throws IllegalStateException 作用域已关闭，或FAIL_FAST策略下已有子任务失败
+     * @throws RejectedExecutionException 线程池拒绝时抛出，此时已提交的子任务会被取消
+     */
+    public <T> Subtask<T> fork(Callable<T> task) {
+        if (task == null) {
+            throw new NullPointerException();
+        }
+        synchronized (lock) {
+            if (closed) {
+                throw new IllegalStateException("作用域已关闭");
+            }
+            if (policy == JoinPolicy.FAIL_FAST && failure != null) {
+                throw new IllegalStateException("作用域内已有子任务失败", failure);
+            }
+            pending++;
+        }
+        Subtask<T> subtask = new Subtask<>(task);
+        synchronized (lock) {
+            subtasks.add(subtask);
+        }
+        try {
+            executor.execute(subtask);
+        } catch (RejectedExecutionException e) {
+            cancelAll();
+            throw e;
+        }
+        return subtask;
+    }
+
+    /**
+     * 等待子任务结束
+     * @throws ExecutionException FAIL_FAST策略下有子任务失败时抛出，其余子任务已被取消
+     * @throws InterruptedException 等待时被中断，未完成的子任务已被取消
+     */
+    public void join() throws InterruptedException, ExecutionException {
+        try {
+            await(0L);
+        } catch (TimeoutException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 限时等待子任务结束
+     * @throws TimeoutException 超时时抛出，未完成的子任务已被取消
+     * @throws ExecutionException FAIL_FAST策略下有子任务失败时抛出，其余子任务已被取消
+     * @throws InterruptedException 等待时被中断，未完成的子任务已被取消
+     */
+    public void join(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        await(Math.max(1L, unit.toNanos(timeout)));
+    }
+
+    /**
+     * @param timeoutNanos 为0时不限时
+     */
+    private void await(long timeoutNanos) throws InterruptedException, ExecutionException, TimeoutException {
+        long deadline = System.nanoTime() + timeoutNanos;
+        Throwable failed;
+        try {
+            synchronized (lock) {
+                while (pending > 0 && !(policy == JoinPolicy.FAIL_FAST && failure != null)) {
+                    if (timeoutNanos == 0L) {
+                        lock.wait();
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0L) {
+                        throw new TimeoutException("等待子任务超时，已取消未完成的子任务");
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+                }
+                failed = policy == JoinPolicy.FAIL_FAST ? failure : null;
+            }
+        } catch (InterruptedException | TimeoutException e) {
+            cancelAll();
+            throw e;
+        }
+        if (failed != null) {
+            cancelAll();
+            throw new ExecutionException(failed);
+        }
+    }
+
+    /**
+     * 关闭作用域，取消所有未完成的子任务
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+        }
+        cancelAll();
+    }
+
+    private void cancelAll() {
+        List<Subtask<?>> current;
+        synchronized (lock) {
+            current = new ArrayList<>(subtasks);
+        }
+        for (Subtask<?> subtask : current) {
+            subtask.cancel(true);
+        }
+    }
+
+    private void completed(Throwable error) {
+        boolean failFast = false;
+        synchronized (lock) {
+            pending--;
+            if (error != null && failure == null) {
+                failure = error;
+                failFast = policy == JoinPolicy.FAIL_FAST;
+            }
+            lock.notifyAll();
+        }
+        if (failFast) {
+            // 在失败的子任务线程上立即取消其余子任务，不等join线程被唤醒
+            cancelAll();
+        }
+    }
+
+    /**
+     * 子任务句柄
+     * @param <T> 结果类型
+     */
+    public final class Subtask<T> extends FutureTask<T> {
+
+        private Subtask(Callable<T> callable) {
+            super(callable);
+        }
+
+        /**
+         * 子任务是否执行失败（抛出异常），被取消不计为失败
+         */
+        public boolean isFailed() {
+            return exception() != null;
+        }
+
+        /**
+         * 子任务抛出的异常
+         * @return 未结束、成功或被取消时返回null
+         */
+        public Throwable exception() {
+            if (!isDone() || isCancelled()) {
+                return null;
+            }
+            try {
+                super.get();
+                return null;
+            } catch (ExecutionException e) {
+                return e.getCause();
+            } catch (InterruptedException | CancellationException e) {
+                return null;
+            }
+        }
+
+        @Override
+        protected void done() {
+            Throwable error = null;
+            if (!isCancelled()) {
+                try {
+                    super.get();
+                } catch (ExecutionException e) {
+                    error = e.getCause();
+                } catch (InterruptedException | CancellationException ignore) {
+                    // 已结束的任务不会阻塞
+                }
+            }
+            completed(error);
+        }
+    }
+}
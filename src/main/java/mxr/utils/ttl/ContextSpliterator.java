@@ -0,0 +1,85 @@
+package mxr.utils.ttl;
+
+import com.alibaba.ttl.TransmittableThreadLocal.Transmitter;
+
+import java.util.Comparator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * 携带上下文快照的Spliterator
+ * <p>
+ * 并行流把数据源拆分后交给ForkJoinPool的各个工作线程（包括窃取任务的线程）处理，
+ * 每段数据都经由拆分出的Spliterator推送到流水线中。在每次推送前回放创建时捕获的上下文，
+ * 流水线中的map、filter等操作即可读取到提交线程的上下文，且不改变ForkJoinPool的任务拆分与窃取方式。
+ * 各段共享同一份捕获结果，每次回放都派生新的子上下文，一段中的写入对其他段不可见。
+ * </p>
+ * <p>
+ * forEachRemaining每段只回放一次；tryAdvance按元素回放，findFirst等短路操作的单元素开销会相应增加
+ * </p>
+ * @param <T> 元素类型
+ */
+final class ContextSpliterator<T> implements Spliterator<T> {
+
+    private final Spliterator<T> delegate;
+
+    private final Object captured;
+
+    ContextSpliterator(Spliterator<T> delegate) {
+        this(delegate, TtlContextHolderUtil.capture());
+    }
+
+    private ContextSpliterator(Spliterator<T> delegate, Object captured) {
+        this.delegate = delegate;
+        this.captured = captured;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+        Object backup = Transmitter.replay(captured);
+        TtlContextHolderUtil.forkReplayed();
+        try {
+            return delegate.tryAdvance(action);
+        } finally {
+            Transmitter.restore(backup);
+        }
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super T> action) {
+        Object backup = Transmitter.replay(captured);
+        TtlContextHolderUtil.forkReplayed();
+        try {
+            delegate.forEachRemaining(action);
+        } finally {
+            Transmitter.restore(backup);
+        }
+    }
+
+    @Override
+    public Spliterator<T> trySplit() {
+        Spliterator<T> split = delegate.trySplit();
+        // 拆分出的部分共享同一份快照
+        return split == null ? null : new ContextSpliterator<>(split, captured);
+    }
+
+    @Override
+    public long estimateSize() {
+        return delegate.estimateSize();
+    }
+
+    @Override
+    public long getExactSizeIfKnown() {
+        return delegate.getExactSizeIfKnown();
+    }
+
+    @Override
+    public int characteristics() {
+        return delegate.characteristics();
+    }
+
+    @Override
+    public Comparator<? super T> getComparator() {
+        return delegate.getComparator();
+    }
+}
@@ -0,0 +1,242 @@
+package mxr.utils.ttl;
+
+import com.alibaba.ttl.TransmittableThreadLocal.Transmitter;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+/**
+ * 携带上下文快照的任务
+ * <p>
+ * 创建时在提交线程上捕获上下文，执行时在工作线程上回放，结束后恢复工作线程原有的上下文，
+ * 并把各阶段耗时交给{@link TtlTaskListener}。周期任务按{@link PeriodicContextPolicy}决定每次执行时携带的上下文。
+ * 经execute/submit提交的任务在开始执行前检查提交时上下文中的{@link ContextDeadline}，已过期时不再执行；
+ * 调度任务的延迟是调用方指定的，不检查截止时间。只丢弃能够取消的任务：Future任务被取消，不提供Future的任务直接丢弃，
+ * CompletableFuture的异步任务取消后其CompletableFuture永远不会完成，照常执行
+ * </p>
+ * <p>
+ * 不实现TtlEnhanced（包括TtlWrapper）：TTL Agent把TtlEnhanced的任务一律视为TtlRunnable，
+ * Agent模式下本任务由Agent再包装一层，执行时本任务回放的上下文覆盖Agent回放的上下文
+ * </p>
+ * @param <V> Callable的返回值类型
+ */
+final class ContextTask<V> implements Runnable, Callable<V> {
+
+    private final Runnable runnable;
+
+    private final Callable<V> callable;
+
+    private final Object captured;
+
+    private final TtlTaskListener listener;
+
+    /** 为REPLAY时captured为TTL的捕获结果，否则为绑定到工作线程的只读上下文 */
+    private final PeriodicContextPolicy policy;
+
+    /** 周期，正数为固定频率，负数为固定延迟，0为一次性任务 */
+    private final long periodNanos;
+
+    /** 提交时上下文中的截止时间，0表示没有截止时间；调度任务不检查 */
+    private final long deadlineMillis;
+
+    /** captured是否被整批任务共享，共享时每次回放派生各自的子上下文 */
+    private final boolean shared;
+
+    /** 本次执行的预期开始时间 */
+    private long readyNanos;
+
+    /** 本次执行回放完成的时间 */
+    private long startedNanos;
+
+    /** 周期任务上一次执行的延迟，首次执行前为-1 */
+    private long lastLatenessNanos = -1L;
+
+    private ContextTask(Runnable runnable, Callable<V> callable, TtlTaskListener listener,
+                        long delayNanos, long periodNanos, PeriodicContextPolicy policy, boolean deadlineChecked) {
+        this.runnable = runnable;
+        this.callable = callable;
+        this.listener = listener;
+        this.periodNanos = periodNanos;
+        this.policy = policy;
+        this.deadlineMillis = deadlineChecked ? ContextDeadline.deadlineMillis() : 0L;
+        this.shared = false;
+        long begin = System.nanoTime();
+        switch (policy) {
+            case FROZEN:
+                this.captured = FrozenContext.of(TtlContextHolderUtil.currentContextOrNull());
+                break;
+            case NONE:
+                this.captured = FrozenContext.empty();
+                break;
+            default:
+                this.captured = TtlContextHolderUtil.capture();
+                break;
+        }
+        long captured = System.nanoTime();
+        this.readyNanos = captured + delayNanos;
+        listener.onCaptured(captured - begin);
+    }
+
+    private ContextTask(Runnable runnable, TtlTaskListener listener, Object captured) {
+        this.runnable = runnable;
+        this.callable = null;
+        this.listener = listener;
+        this.periodNanos = 0L;
+        this.policy = PeriodicContextPolicy.REPLAY;
+        this.deadlineMillis = ContextDeadline.deadlineMillis();
+        this.shared = true;
+        this.captured = captured;
+        this.readyNanos = System.nanoTime();
+    }
+
+    /**
+     * 创建经execute/submit提交的任务，开始执行前检查截止时间
+     */
+    static ContextTask<Void> of(Runnable runnable, TtlTaskListener listener) {
+        return new ContextTask<>(runnable, null, listener, 0L, 0L, PeriodicContextPolicy.REPLAY, true);
+    }
+
+    /**
+     * 创建不检查截止时间的任务，用于调用方自行处理超时、丢弃任务会使调用方一直等待的场景
+     */
+    static ContextTask<Void> withoutDeadline(Runnable runnable, TtlTaskListener listener) {
+        return new ContextTask<>(runnable, null, listener, 0L, 0L, PeriodicContextPolicy.REPLAY, false);
+    }
+
+    /**
+     * 创建一次性调度任务，periodNanos为0
+     */
+    static ContextTask<Void> of(Runnable runnable, TtlTaskListener listener, long delayNanos, long periodNanos) {
+        return of(runnable, listener, delayNanos, periodNanos, PeriodicContextPolicy.REPLAY);
+    }
+
+    /**
+     * 创建周期任务
+     * @param periodNanos 正数为固定频率，负数为固定延迟
+     * @param policy 每次执行时携带的上下文
+     */
+    static ContextTask<Void> of(Runnable runnable, TtlTaskListener listener, long delayNanos, long periodNanos,
+                                PeriodicContextPolicy policy) {
+        return new ContextTask<>(runnable, null, listener, delayNanos, periodNanos, policy, false);
+    }
+
+    /**
+     * 创建提交后立即执行的任务，开始执行前检查截止时间，已过期时call抛出CancellationException
+     */
+    static <V> ContextTask<V> of(Callable<V> callable, TtlTaskListener listener) {
+        return new ContextTask<>(null, callable, listener, 0L, 0L, PeriodicContextPolicy.REPLAY, true);
+    }
+
+    /**
+     * 创建一次性调度任务
+     */
+    static <V> ContextTask<V> of(Callable<V> callable, TtlTaskListener listener, long delayNanos) {
+        return new ContextTask<>(null, callable, listener, delayNanos, 0L, PeriodicContextPolicy.REPLAY, false);
+    }
+
+    /**
+     * 使用已捕获的上下文创建任务，批量提交时整批共享同一份捕获结果，执行时各自派生子上下文
+     * @param captured {@link #capture(TtlTaskListener)}的返回值
+     */
+    static ContextTask<Void> of(Runnable runnable, TtlTaskListener listener, Object captured) {
+        return new ContextTask<>(runnable, listener, captured);
+    }
+
+    /**
+     * 在当前线程捕获一次上下文
+     */
+    static Object capture(TtlTaskListener listener) {
+        long begin = System.nanoTime();
+        Object captured = TtlContextHolderUtil.capture();
+        listener.onCaptured(System.nanoTime() - begin);
+        return captured;
+    }
+
+    @Override
+    public void run() {
+        if (ContextDeadline.isExpired(deadlineMillis) && expire()) {
+            return;
+        }
+        Object backup = beforeExecute();
+        try {
+            runnable.run();
+        } finally {
+            afterExecute(backup);
+        }
+    }
+
+    @Override
+    public V call() throws Exception {
+        if (ContextDeadline.isExpired(deadlineMillis)) {
+            listener.onExpired();
+            throw new CancellationException("任务在队列中等待期间已超过请求截止时间");
+        }
+        Object backup = beforeExecute();
+        try {
+            return callable.call();
+        } finally {
+            afterExecute(backup);
+        }
+    }
+
+    /**
+     * 丢弃已过期的任务，任务为Future时取消，等待结果的调用方收到CancellationException
+     * @return 任务无法取消而需要照常执行时返回false
+     */
+    private boolean expire() {
+        if (runnable instanceof CompletableFuture.AsynchronousCompletionTask) {
+            return false;
+        }
+        listener.onExpired();
+        if (runnable instanceof Future) {
+            ((Future<?>) runnable).cancel(false);
+        }
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object beforeExecute() {
+        long begin = System.nanoTime();
+        Object backup = policy == PeriodicContextPolicy.REPLAY
+                ? Transmitter.replay(captured)
+                : TtlContextHolderUtil.bindDetached((BaseContext<Object>) captured);
+        if (shared) {
+            TtlContextHolderUtil.forkReplayed();
+        }
+        startedNanos = System.nanoTime();
+        long latenessNanos = Math.max(0L, begin - readyNanos);
+        listener.onStarted(latenessNanos, startedNanos - begin);
+        if (periodNanos != 0) {
+            // 漂移为相邻两次执行的延迟之差，首次执行只有延迟
+            long driftNanos = lastLatenessNanos < 0 ? 0L : Math.abs(latenessNanos - lastLatenessNanos);
+            lastLatenessNanos = latenessNanos;
+            listener.onPeriodicStarted(latenessNanos, driftNanos);
+        }
+        return backup;
+    }
+
+    private void afterExecute(Object backup) {
+        long finished = System.nanoTime();
+        Transmitter.restore(backup);
+        listener.onCompleted(finished - startedNanos, System.nanoTime() - finished);
+        if (periodNanos > 0) {
+            readyNanos += periodNanos;
+        } else if (periodNanos < 0) {
+            readyNanos = finished - periodNanos;
+        }
+    }
+
+    /**
+     * 被包装的原始任务
+     */
+    Object unwrap() {
+        return runnable != null ? runnable : callable;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + " - " + unwrap();
+    }
+}
@@ -0,0 +1,401 @@
+package mxr.utils.ttl;
+
+import java.io.Serial;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.function.Supplier;
+
+/**
+ * 基于不可变持久化Map的上下文实现
+ * <p>
+ * 每次写操作都会生成新的{@link ImmutableContextMap}并替换根引用（copy-on-write），读操作无锁。
+ * 向子线程传递时只需把当前根引用交给新的上下文对象（见{@link #snapshot()}），捕获代价为一次指针拷贝，
+ * 子任务看到的是提交时刻的快照，子任务内的remove操作不会影响请求线程。
+ * </p>
+ * <p>
+ * 通过{@link ContextKey}注册的key存放在按槽位索引的数组中，读写无需hash计算也不分配对象。
+ * 槽位数组在快照后与子上下文共享，任一方首次写入时才复制一次，之后的写入直接原地修改，
+ * 因此同一上下文对象的槽位写入要求单一写线程（请求线程，或持有自身快照的子线程）。
+ * </p>
+ * <p>
+ * 快照即子上下文：读取落到派生时刻冻结的父视图上，子任务的写入与删除只进入子上下文自身，
+ * 同时记录在本地变更中，父上下文与兄弟任务不受影响。子任务结束后由父上下文的写线程调用{@link #mergeBack()}
+ * 把本地变更发布到父上下文。整批任务共享同一份捕获结果时（批量提交、并行流），每个任务回放时通过{@link #fork()}
+ * 派生各自的子上下文，批内任务的写入互不可见。
+ * </p>
+ * <p>
+ * 派生子上下文时对声明了{@link TransmitPolicy}的槽位执行传递策略：只在请求线程可见的属性不进入子上下文，
+ * 复制策略的属性由子上下文持有副本。未声明策略时派生仍只是一次指针拷贝
+ * </p>
+ * <p>
+ * {@link #addLazyProperty(String, Supplier)}写入的值在首次读取时才计算，计算结果缓存在值本身，
+ * 共享同一快照的请求线程与子任务只计算一次。遍历属性的key不会触发计算，读取条目的值才会
+ * </p>
+ * @param <T> 变量类型
+ */
+public class CopyOnWriteContextImpl<T> implements BaseContext<T> {
+
+	@Serial
+	private static final long serialVersionUID = -6135305949417296311L;
+
+	@SuppressWarnings("rawtypes")
+	private static final AtomicReferenceFieldUpdater<CopyOnWriteContextImpl, ImmutableContextMap> ROOT_UPDATER =
+			AtomicReferenceFieldUpdater.newUpdater(CopyOnWriteContextImpl.class, ImmutableContextMap.class, "root");
+
+	@SuppressWarnings("rawtypes")
+	private static final AtomicReferenceFieldUpdater<CopyOnWriteContextImpl, Object[]> SLOTS_UPDATER =
+			AtomicReferenceFieldUpdater.newUpdater(CopyOnWriteContextImpl.class, Object[].class, "slots");
+
+	@SuppressWarnings("rawtypes")
+	private static final AtomicReferenceFieldUpdater<CopyOnWriteContextImpl, ImmutableContextMap> CHANGES_UPDATER =
+			AtomicReferenceFieldUpdater.newUpdater(CopyOnWriteContextImpl.class, ImmutableContextMap.class, "changes");
+
+	private static final Object[] EMPTY_SLOTS = new Object[0];
+
+	// 本地变更中表示删除的占位值
+	private static final Object REMOVED = new Object();
+
+	// 动态key的快照根
+	private volatile ImmutableContextMap<T> root;
+
+	// 类型化key的槽位
+	private volatile Object[] slots;
+
+	// 槽位数组是否与其他上下文共享，共享时写入前需先复制
+	private volatile boolean slotsShared;
+
+	// 派生出当前上下文的父上下文，请求级上下文为null；不参与序列化，反序列化后视为请求级上下文
+	private final transient CopyOnWriteContextImpl<T> parent;
+
+	// 子上下文的本地变更，值为REMOVED时表示删除
+	private transient volatile ImmutableContextMap<Object> changes;
+
+	public CopyOnWriteContextImpl() {
+		this(ImmutableContextMap.empty(), EMPTY_SLOTS, null);
+	}
+
+	private CopyOnWriteContextImpl(ImmutableContextMap<T> root, Object[] slots, CopyOnWriteContextImpl<T> parent) {
+		this.root = root;
+		this.slots = slots;
+		this.slotsShared = true;
+		this.parent = parent;
+		this.changes = parent == null ? null : ImmutableContextMap.empty();
+	}
+
+	/**
+	 * 生成共享当前根的子上下文，供子线程使用
+	 * @return 新的上下文对象，与当前对象此后的修改互不影响
+	 */
+	public CopyOnWriteContextImpl<T> snapshot() {
+		this.slotsShared = true;
+		return new CopyOnWriteContextImpl<>(root, transmitSlots(slots), this);
+	}
+
+	/**
+	 * 生成与当前子上下文同父、共享同一冻结视图的新子上下文，供共享同一份捕获结果的批内任务各自使用
+	 * <p>
+	 * 派生当前子上下文时已执行过传递策略，不再重复执行；请求级上下文等同于{@link #snapshot()}
+	 * </p>
+	 * @return 新的子上下文，本地变更为空
+	 */
+	CopyOnWriteContextImpl<T> fork() {
+		if (parent == null) {
+			return snapshot();
+		}
+		this.slotsShared = true;
+		return new CopyOnWriteContextImpl<>(root, slots, parent);
+	}
+
+	/**
+	 * 对声明了传递策略的槽位执行策略
+	 * @return 没有槽位需要改变时返回原数组
+	 */
+	private static Object[] transmitSlots(Object[] current) {
+		Object[] result = current;
+		for (int index : ContextKey.policySlots()) {
+			if (index >= current.length || current[index] == null) {
+				continue;
+			}
+			ContextKey<?> key = ContextKey.lookup(index);
+			Object value = key.getPolicy().transmit(key, current[index]);
+			if (value != current[index]) {
+				if (result == current) {
+					result = current.clone();
+				}
+				result[index] = value;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * 是否为快照派生的子上下文
+	 */
+	public boolean isChild() {
+		return parent != null;
+	}
+
+	/**
+	 * 子上下文自派生以来的本地写入与删除
+	 * @return 被删除的key对应的值为null；请求级上下文返回空Map
+	 */
+	@SuppressWarnings("unchecked")
+	public Map<String, T> getLocalChanges() {
+		ImmutableContextMap<Object> current = changes;
+		if (current == null || current.isEmpty()) {
+			return Collections.emptyMap();
+		}
+		Map<String, T> result = new LinkedHashMap<>();
+		for (Map.Entry<String, Object> entry : current.asRawMap().entrySet()) {
+			result.put(entry.getKey(), entry.getValue() == REMOVED ? null : (T) LazyValue.resolve(entry.getValue()));
+		}
+		return result;
+	}
+
+	/**
+	 * 把本地变更发布到父上下文，并清空本地变更
+	 * <p>
+	 * 父上下文的槽位写入要求单一写线程，应在父上下文的写线程上、子任务结束之后调用（例如Future.get返回后）。
+	 * 父上下文在派生之后写入的同名key会被子上下文的变更覆盖。请求级上下文调用时不做任何操作
+	 * </p>
+	 */
+	public void mergeBack() {
+		if (parent == null) {
+			return;
+		}
+		ImmutableContextMap<Object> current = CHANGES_UPDATER.getAndSet(this, ImmutableContextMap.empty());
+		// 延迟值原样合并，父上下文与子任务共享同一份计算结果
+		for (Map.Entry<String, Object> entry : current.asRawMap().entrySet()) {
+			Object value = entry.getValue() == REMOVED ? null : entry.getValue();
+			parent.apply(entry.getKey(), value);
+			// 父上下文本身是子上下文时继续记录，逐层合并到请求级上下文
+			parent.recordChange(entry.getKey(), value);
+		}
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <V> V get(ContextKey<V> key) {
+		Object value = readSlot(key.getIndex());
+		if (value instanceof LazyValue) {
+			return key.getType().cast(((LazyValue<?>) value).get());
+		}
+		return (V) value;
+	}
+
+	@Override
+	public <V> void put(ContextKey<V> key, V value) {
+		checkWritable("add");
+		writeSlot(key.getIndex(), key.getType().cast(value));
+		recordChange(key.getName(), value);
+	}
+
+	@Override
+	public void remove(ContextKey<?> key) {
+		writeSlot(key.getIndex(), null);
+		recordChange(key.getName(), null);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public T getProperty(String key) {
+		ContextKey<?> contextKey = ContextKey.lookup(key);
+		if (contextKey != null) {
+			return (T) LazyValue.resolve(readSlot(contextKey.getIndex()));
+		}
+		return root.get(key);
+	}
+
+	@Override
+	public void addProperty(String key, T value) {
+		checkWritable("add");
+		apply(key, value);
+		recordChange(key, value);
+	}
+
+	/**
+	 * 添加延迟计算的变量
+	 * <p>
+	 * supplier在首次读取该key的线程上执行一次，结果被所有共享该值的上下文复用；
+	 * 通过ContextKey注册的key在读取时检查结果类型
+	 * </p>
+	 */
+	@Override
+	public void addLazyProperty(String key, Supplier<? extends T> supplier) {
+		checkWritable("add");
+		LazyValue<T> value = new LazyValue<>(supplier);
+		apply(key, value);
+		recordChange(key, value);
+	}
+
+	@Override
+	public void removeProperty(String key) {
+		apply(key, null);
+		recordChange(key, null);
+	}
+
+	/**
+	 * 获取所有变量
+	 * @return 当前快照的只读视图，后续修改不会反映到已返回的视图中
+	 */
+	@Override
+	public Map<String, T> getProperties() {
+		return propertyMap().asMap();
+	}
+
+	/**
+	 * 合并动态key与槽位后的全部变量，延迟值保持未计算
+	 */
+	@SuppressWarnings("unchecked")
+	ImmutableContextMap<T> propertyMap() {
+		ImmutableContextMap<T> result = root;
+		Object[] current = slots;
+		for (int i = 0; i < current.length; i++) {
+			if (current[i] != null) {
+				result = result.with(ContextKey.lookup(i).getName(), (T) current[i]);
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public void setProperties(Map<String, T> map) {
+		checkWritable("set");
+		if (parent != null) {
+			// 子上下文逐个记录变更，合并时父上下文得到相同的结果
+			for (String key : getProperties().keySet()) {
+				if (map == null || !map.containsKey(key)) {
+					removeProperty(key);
+				}
+			}
+			if (map != null) {
+				map.forEach(this::addProperty);
+			}
+			return;
+		}
+		ImmutableContextMap<T> dynamic = ImmutableContextMap.empty();
+		Object[] newSlots = EMPTY_SLOTS;
+		if (map != null) {
+			for (Map.Entry<String, T> entry : map.entrySet()) {
+				ContextKey<?> contextKey = ContextKey.lookup(entry.getKey());
+				if (contextKey == null) {
+					dynamic = dynamic.with(entry.getKey(), entry.getValue());
+					continue;
+				}
+				if (newSlots == EMPTY_SLOTS) {
+					newSlots = new Object[ContextKey.slotCount()];
+				}
+				newSlots[contextKey.getIndex()] = contextKey.getType().cast(entry.getValue());
+			}
+		}
+		this.slots = newSlots;
+		this.slotsShared = newSlots == EMPTY_SLOTS;
+		this.root = dynamic;
+	}
+
+	@Override
+	public void removeAllProperties() {
+		if (parent != null) {
+			getProperties().keySet().forEach(this::removeProperty);
+			return;
+		}
+		this.slots = EMPTY_SLOTS;
+		this.slotsShared = true;
+		this.root = ImmutableContextMap.empty();
+	}
+
+	/**
+	 * 写入或删除属性，不记录本地变更
+	 * @param value 为null时删除，延迟值在读取时才检查类型
+	 */
+	@SuppressWarnings("unchecked")
+	private void apply(String key, Object value) {
+		ContextKey<?> contextKey = ContextKey.lookup(key);
+		if (contextKey != null) {
+			writeSlot(contextKey.getIndex(),
+					value == null || value instanceof LazyValue ? value : contextKey.getType().cast(value));
+			return;
+		}
+		ImmutableContextMap<T> current;
+		do {
+			current = root;
+		} while (!compareAndSetRoot(current, value == null ? current.without(key) : current.with(key, (T) value)));
+	}
+
+	/**
+	 * 请求线程可以写入请求级上下文；子上下文只属于持有它的子任务，任意线程均可写入
+	 */
+	private void checkWritable(String operation) {
+		if (parent == null && !TtlContextHolderUtil.isRequestThread()) {
+			throw new UnsupportedOperationException("仅允许请求线程执行" + operation + "操作");
+		}
+	}
+
+	private void recordChange(String key, Object value) {
+		if (parent == null) {
+			return;
+		}
+		Object change = value == null ? REMOVED : value;
+		ImmutableContextMap<Object> current;
+		do {
+			current = changes;
+		} while (!CHANGES_UPDATER.compareAndSet(this, current, current.with(key, change)));
+	}
+
+	private Object readSlot(int index) {
+		Object[] current = slots;
+		return index < current.length ? current[index] : null;
+	}
+
+	private void writeSlot(int index, Object value) {
+		if (parent != null) {
+			writeSlotShared(index, value);
+			return;
+		}
+		Object[] current = slots;
+		if (index >= current.length) {
+			if (value == null) {
+				return;
+			}
+			current = Arrays.copyOf(current, Math.max(index + 1, ContextKey.slotCount()));
+		} else if (current[index] == value) {
+			return;
+		} else if (slotsShared) {
+			current = current.clone();
+		} else {
+			current[index] = value;
+			return;
+		}
+		current[index] = value;
+		this.slots = current;
+		this.slotsShared = false;
+	}
+
+	/**
+	 * 子上下文可能被整批任务共享，每次写入都复制槽位数组并以CAS替换
+	 */
+	private void writeSlotShared(int index, Object value) {
+		Object[] current;
+		Object[] next;
+		do {
+			current = slots;
+			if (index < current.length ? current[index] == value : value == null) {
+				return;
+			}
+			next = Arrays.copyOf(current, Math.max(current.length, Math.max(index + 1, ContextKey.slotCount())));
+			next[index] = value;
+		} while (!SLOTS_UPDATER.compareAndSet(this, current, next));
+	}
+
+	private boolean compareAndSetRoot(ImmutableContextMap<T> expect, ImmutableContextMap<T> update) {
+		return expect == update || ROOT_UPDATER.compareAndSet(this, expect, update);
+	}
+
+	@Override
+	public String toString() {
+		return "CopyOnWriteContextImpl(properties=" + propertyMap() + ")";
+	}
+}
@@ -0,0 +1,471 @@
+package mxr.utils.ttl;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 按上下文属性公平调度的线程池包装
+ * <p>
+ * 提交任务时读取提交线程上下文中的指定属性（例如租户ID）作为分区key，任务先进入该key自己的队列，
+ * 再按加权轮转（单位代价的赤字轮转）从各key的队列中取出交给工作线程，同时在执行的任务数不超过并行度。
+ * 某个key积压大量任务时只会占满自己的队列，其他key的任务仍按权重轮流执行。
+ * </p>
+ * <p>
+ * 每个key可设置权重（每轮可连续取出的任务数）、并发上限与队列容量，队列已满时拒绝该key的新任务。
+ * 有任务的key注册 ttl.executor.fair.queued / ttl.executor.fair.running 指标（带 name、key 标签），
+ * key的队列为空且没有执行中的任务时移除该key及其指标；设置过权重或并发上限的key保留到线程池关闭
+ * </p>
+ */
+public class FairContextExecutorService extends ContextExecutorService {
+
+    /** 上下文中没有分区属性时使用的key */
+    public static final String DEFAULT_KEY = "default";
+
+    private static final String PREFIX = "ttl.executor.fair";
+
+    private final String keyName;
+
+    private final int parallelism;
+
+    private final int defaultMaxConcurrency;
+
+    private final int maxQueuedPerKey;
+
+    private final MeterRegistry registry;
+
+    private final Object lock = new Object();
+
+    /** 有任务或设置过参数的key，受lock保护 */
+    private final Map<String, Lane> lanes = new HashMap<>();
+
+    /** 有待执行任务的key，按轮转顺序排列，受lock保护 */
+    private final ArrayDeque<Lane> active = new ArrayDeque<>();
+
+    /** 已交给工作线程的任务数，受lock保护 */
+    private int running;
+
+    /** 各key队列中的任务总数，受lock保护 */
+    private int queued;
+
+    /** 已调用shutdown，受lock保护 */
+    private boolean shutdown;
+
+    /** 队列排空后是否已关闭被包装的线程池，受lock保护 */
+    private boolean delegateShutdown;
+
+    /**
+     * @param name 线程池名称，用于指标与日志
+     * @param delegate 被包装的线程池，线程数应不小于并行度
+     * @param listener 任务生命周期监听器
+     * @param keyName 分区属性的key
+     * @param parallelism 同时执行的任务数上限
+     * @param defaultMaxConcurrency 每个key默认的并发上限，小于等于0表示只受并行度限制
+     * @param maxQueuedPerKey 每个key的队列容量，小于等于0表示不限制
+     */
+    public FairContextExecutorService(String name, ExecutorService delegate, TtlTaskListener listener,
+                                      String keyName, int parallelism, int defaultMaxConcurrency, int maxQueuedPerKey) {
+        super(name, delegate, listener);
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism必须大于0");
+        }
+        this.keyName = keyName;
+        this.parallelism = parallelism;
+        this.defaultMaxConcurrency = defaultMaxConcurrency > 0 ? defaultMaxConcurrency : Integer.MAX_VALUE;
+        this.maxQueuedPerKey = maxQueuedPerKey > 0 ? maxQueuedPerKey : Integer.MAX_VALUE;
+        this.registry = Metrics.globalRegistry;
+    }
+
+    public String getKeyName() {
+        return keyName;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * 设置key的权重，即每轮可连续取出的任务数，默认为1
+     * @throws IllegalStateException 线程池已关闭时抛出
+     */
+    public void setWeight(String key, int weight) {
+        if (weight <= 0) {
+            throw new IllegalArgumentException("weight必须大于0");
+        }
+        synchronized (lock) {
+            Lane lane = configuredLane(key);
+            lane.weight = weight;
+        }
+    }
+
+    /**
+     * 设置key的并发上限，覆盖线程池默认的并发上限，小于等于0表示只受并行度限制
+     * @throws IllegalStateException 线程池已关闭时抛出
+     */
+    public void setMaxConcurrency(String key, int maxConcurrency) {
+        synchronized (lock) {
+            Lane lane = configuredLane(key);
+            lane.maxConcurrency = maxConcurrency > 0 ? maxConcurrency : Integer.MAX_VALUE;
+        }
+        dispatchQueued();
+    }
+
+    /**
+     * 获取或创建设置参数的key，设置过参数的key不会因空闲而移除，受lock保护
+     */
+    private Lane configuredLane(String key) {
+        if (shutdown) {
+            throw new IllegalStateException(getName() + ": 线程池已关闭");
+        }
+        Lane lane = lane(key);
+        lane.configured = true;
+        return lane;
+    }
+
+    /**
+     * key的队列中等待执行的任务数
+     */
+    public int getQueued(String key) {
+        synchronized (lock) {
+            Lane lane = lanes.get(key);
+            return lane == null ? 0 : lane.tasks.size();
+        }
+    }
+
+    /**
+     * key正在执行的任务数
+     */
+    public int getRunning(String key) {
+        synchronized (lock) {
+            Lane lane = lanes.get(key);
+            return lane == null ? 0 : lane.running;
+        }
+    }
+
+    /**
+     * 当前保留的key数，包括有任务的key与设置过参数的key
+     */
+    public int getKeyCount() {
+        synchronized (lock) {
+            return lanes.size();
+        }
+    }
+
+    /**
+     * 按提交线程上下文的分区属性入队，再按轮转顺序交给工作线程
+     */
+    @Override
+    protected void dispatch(Runnable task) {
+        String key = currentKey();
+        synchronized (lock) {
+            if (shutdown) {
+                throw reject("线程池已关闭");
+            }
+            Lane lane = lane(key);
+            if (lane.tasks.size() >= maxQueuedPerKey) {
+                throw reject("key [" + lane.key + "] 的队列已满");
+            }
+            lane.tasks.addLast(task);
+            queued++;
+            if (!lane.active) {
+                lane.active = true;
+                active.addLast(lane);
+            }
+        }
+        dispatchQueued();
+    }
+
+    private RejectedExecutionException reject(String message) {
+        listener.onRejected();
+        return new RejectedExecutionException(getName() + ": " + message);
+    }
+
+    private String currentKey() {
+        BaseContext<Object> context = TtlContextHolderUtil.currentContextOrNull();
+        Object value = context == null ? null : context.getProperty(keyName);
+        return value == null ? DEFAULT_KEY : value.toString();
+    }
+
+    /**
+     * 获取或创建key，新建时注册指标，受lock保护；调用方需先确认线程池未关闭
+     */
+    private Lane lane(String key) {
+        Lane lane = lanes.get(key);
+        if (lane == null) {
+            lane = new Lane(key);
+            lanes.put(key, lane);
+        }
+        return lane;
+    }
+
+    /**
+     * key空闲且未设置过参数时移除该key及其指标，受lock保护
+     */
+    private void evictIfIdle(Lane lane) {
+        if (lane.running == 0 && lane.tasks.isEmpty() && !lane.configured && lanes.remove(lane.key, lane)) {
+            lane.removeMeters();
+        }
+    }
+
+    /**
+     * 在并行度允许的范围内把队列中的任务交给工作线程
+     */
+    private void dispatchQueued() {
+        while (true) {
+            Lane lane;
+            Runnable task;
+            synchronized (lock) {
+                if (running >= parallelism) {
+                    return;
+                }
+                lane = nextLane();
+                if (lane == null) {
+                    return;
+                }
+                task = lane.tasks.pollFirst();
+                queued--;
+                running++;
+                lane.running++;
+            }
+            try {
+                super.dispatch(new LaneTask(lane, task));
+            } catch (RejectedExecutionException e) {
+                rejectedByDelegate(lane, task);
+                return;
+            }
+        }
+    }
+
+    /**
+     * 被包装的线程池拒绝了已出队的任务，取消该任务
+     * <p>
+     * 只有被包装的线程池已被外部关闭时，队列中的任务才都无法再执行：一并取消并不再接受新任务，调用过shutdown时随即关闭。
+     * 暂时性的拒绝（例如被包装线程池的队列已满）只取消这一个任务，其余任务留在各key的队列中，
+     * 由下一次提交或任务结束时继续调度
+     * </p>
+     */
+    private void rejectedByDelegate(Lane lane, Runnable task) {
+        List<Runnable> dropped = new ArrayList<>();
+        boolean terminate;
+        synchronized (lock) {
+            running--;
+            lane.running--;
+            if (unwrap().isShutdown()) {
+                shutdown = true;
+                drainLanes(dropped);
+            } else {
+                evictIfIdle(lane);
+            }
+            terminate = shutdown && queued == 0 && !delegateShutdown;
+            if (terminate) {
+                delegateShutdown = true;
+            }
+        }
+        // 被拒绝的任务已由被包装线程池的拒绝策略计数，这里只统计一并丢弃的排队任务
+        cancel(task);
+        for (Runnable queuedTask : dropped) {
+            listener.onRejected();
+            cancel(queuedTask);
+        }
+        if (terminate) {
+            super.shutdown();
+            removeLaneMeters();
+        }
+    }
+
+    /**
+     * 取消无法执行的任务，任务为Future时等待结果的调用方收到CancellationException
+     */
+    private static void cancel(Runnable task) {
+        Object original = task instanceof ContextTask ? ((ContextTask<?>) task).unwrap() : task;
+        if (original instanceof Future) {
+            ((Future<?>) original).cancel(false);
+        }
+    }
+
+    /**
+     * 取出所有key队列中的任务，受lock保护
+     */
+    private void drainLanes(List<Runnable> drained) {
+        for (Lane lane : active) {
+            drained.addAll(lane.tasks);
+            lane.tasks.clear();
+            lane.active = false;
+            lane.deficit = 0;
+        }
+        active.clear();
+        queued = 0;
+    }
+
+    /**
+     * 按赤字轮转选出下一个可执行的key，受lock保护
+     * <p>
+     * key轮到队首时获得等于权重的额度，每取出一个任务消耗1，额度用完或队列为空时让出队首；
+     * 达到并发上限的key保留剩余额度并轮到下一个key
+     * </p>
+     * @return 所有key都没有可执行的任务时返回null
+     */
+    private Lane nextLane() {
+        for (int i = 0, size = active.size(); i < size; i++) {
+            Lane lane = active.peekFirst();
+            if (lane.running < lane.maxConcurrency) {
+                if (lane.deficit <= 0) {
+                    lane.deficit = lane.weight;
+                }
+                lane.deficit--;
+                if (lane.tasks.size() == 1) {
+                    active.pollFirst();
+                    lane.active = false;
+                    lane.deficit = 0;
+                } else if (lane.deficit <= 0) {
+                    active.addLast(active.pollFirst());
+                }
+                return lane;
+            }
+            active.addLast(active.pollFirst());
+        }
+        return null;
+    }
+
+    private void completed(Lane lane) {
+        boolean terminate;
+        synchronized (lock) {
+            running--;
+            lane.running--;
+            evictIfIdle(lane);
+            terminate = shutdown && queued == 0 && !delegateShutdown;
+            if (terminate) {
+                delegateShutdown = true;
+            }
+        }
+        if (terminate) {
+            super.shutdown();
+            removeLaneMeters();
+        } else {
+            dispatchQueued();
+        }
+    }
+
+    /**
+     * 不再接受新任务，已入队的任务按原有顺序执行完后关闭被包装的线程池
+     */
+    @Override
+    public void shutdown() {
+        boolean terminate;
+        synchronized (lock) {
+            shutdown = true;
+            terminate = queued == 0 && !delegateShutdown;
+            if (terminate) {
+                delegateShutdown = true;
+            }
+        }
+        if (terminate) {
+            super.shutdown();
+            removeLaneMeters();
+        }
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        List<Runnable> pending = new ArrayList<>();
+        synchronized (lock) {
+            shutdown = true;
+            delegateShutdown = true;
+            drainLanes(pending);
+        }
+        pending.addAll(super.shutdownNow());
+        removeLaneMeters();
+        return pending;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        synchronized (lock) {
+            return shutdown;
+        }
+    }
+
+    /**
+     * 线程池关闭后移除所有key及其指标，此后不再创建key
+     */
+    private void removeLaneMeters() {
+        synchronized (lock) {
+            lanes.values().forEach(Lane::removeMeters);
+            lanes.clear();
+        }
+    }
+
+    /**
+     * 单个key的队列与调度状态，受lock保护
+     */
+    private final class Lane {
+
+        private final String key;
+
+        private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+
+        private final List<Meter> meters = new ArrayList<>(2);
+
+        /** 是否设置过权重或并发上限 */
+        private boolean configured;
+
+        private int weight = 1;
+
+        private int maxConcurrency = defaultMaxConcurrency;
+
+        private int deficit;
+
+        private int running;
+
+        private boolean active;
+
+        private Lane(String key) {
+            this.key = key;
+            Tags tags = Tags.of("name", getName(), "key", key);
+            meters.add(Gauge.builder(PREFIX + ".queued", this, l -> getQueued(l.key))
+                    .tags(tags).description("key队列中等待执行的任务数").register(registry));
+            meters.add(Gauge.builder(PREFIX + ".running", this, l -> getRunning(l.key))
+                    .tags(tags).description("key正在执行的任务数").register(registry));
+        }
+
+        private void removeMeters() {
+            meters.forEach(meter -> TtlExecutorMetrics.removeOwned(registry, meter));
+            meters.clear();
+        }
+    }
+
+    /**
+     * 执行结束后释放并发额度并调度下一个任务
+     */
+    private final class LaneTask implements Runnable {
+
+        private final Lane lane;
+
+        private final Runnable task;
+
+        private LaneTask(Lane lane, Runnable task) {
+            this.lane = lane;
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            try {
+                task.run();
+            } finally {
+                completed(lane);
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package mxr.utils.ttl;
+
+import java.io.Serial;
+import java.util.Map;
+
+/**
+ * 只读的冻结上下文
+ * <p>
+ * 创建时复制源上下文的全部属性，之后与源上下文不再有任何关联，所有写操作均抛出UnsupportedOperationException。
+ * 延迟值原样保留，首次读取时计算。
+ * 供{@link PeriodicContextPolicy#FROZEN}与{@link PeriodicContextPolicy#NONE}的周期任务使用
+ * </p>
+ * @param <T> 变量类型
+ */
+final class FrozenContext<T> implements BaseContext<T> {
+
+	@Serial
+	private static final long serialVersionUID = 2914402153386297816L;
+
+	@SuppressWarnings("rawtypes")
+	private static final FrozenContext EMPTY = new FrozenContext<>(ImmutableContextMap.empty());
+
+	private final ImmutableContextMap<T> properties;
+
+	private FrozenContext(ImmutableContextMap<T> properties) {
+		this.properties = properties;
+	}
+
+	/**
+	 * 复制上下文的当前属性
+	 * @param source 源上下文，为null时返回空上下文
+	 */
+	static <T> FrozenContext<T> of(BaseContext<T> source) {
+		if (source == null) {
+			return empty();
+		}
+		ImmutableContextMap<T> current = source instanceof CopyOnWriteContextImpl
+				? ((CopyOnWriteContextImpl<T>) source).propertyMap()
+				: ImmutableContextMap.copyOf(source.getProperties());
+		return current.isEmpty() ? empty() : new FrozenContext<>(current);
+	}
+
+	@SuppressWarnings("unchecked")
+	static <T> FrozenContext<T> empty() {
+		return EMPTY;
+	}
+
+	@Override
+	public T getProperty(String key) {
+		return properties.get(key);
+	}
+
+	@Override
+	public void addProperty(String key, T value) {
+		throw new UnsupportedOperationException("冻结上下文为只读，不允许执行add操作");
+	}
+
+	@Override
+	public void removeProperty(String key) {
+		throw new UnsupportedOperationException("冻结上下文为只读，不允许执行remove操作");
+	}
+
+	@Override
+	public Map<String, T> getProperties() {
+		return properties.asMap();
+	}
+
+	@Override
+	public void setProperties(Map<String, T> properties) {
+		throw new UnsupportedOperationException("冻结上下文为只读，不允许执行set操作");
+	}
+
+	@Override
+	public void removeAllProperties() {
+		throw new UnsupportedOperationException("冻结上下文为只读，不允许执行remove操作");
+	}
+
+	@Override
+	public String toString() {
+		return "FrozenContext(properties=" + properties + ")";
+	}
+}
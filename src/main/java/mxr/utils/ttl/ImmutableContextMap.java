@@ -0,0 +1,306 @@
+package mxr.utils.ttl;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * 不可变的持久化上下文Map
+ * <p>
+ * 按key的hash有序存放在紧凑数组中，查找为二分查找，写操作复制数组后返回新实例（copy-on-write）。
+ * 上下文通常只有少量key，数组拷贝的代价远低于ConcurrentHashMap的分段开销，
+ * 且实例一旦创建便不再变化，可以在线程间直接共享引用作为快照。
+ * </p>
+ * <p>
+ * 值可以是{@link LazyValue}，{@link #get(String)}与{@link #asMap()}在读取值时才计算，
+ * {@link #getRaw(String)}与{@link #asRawMap()}原样返回
+ * </p>
+ * @param <T> 变量类型
+ */
+final class ImmutableContextMap<T> implements Serializable {
+
+	@Serial
+	private static final long serialVersionUID = -3529411740165563217L;
+
+	@SuppressWarnings("rawtypes")
+	private static final ImmutableContextMap EMPTY = new ImmutableContextMap<>(new int[0], new String[0], new Object[0]);
+
+	// 按hash升序排列，hash相同的key相邻存放
+	private final int[] hashes;
+
+	private final String[] keys;
+
+	private final Object[] values;
+
+	private ImmutableContextMap(int[] hashes, String[] keys, Object[] values) {
+		this.hashes = hashes;
+		this.keys = keys;
+		this.values = values;
+	}
+
+	@SuppressWarnings("unchecked")
+	static <T> ImmutableContextMap<T> empty() {
+		return EMPTY;
+	}
+
+	/**
+	 * 由普通Map构建不可变Map，忽略null值
+	 */
+	static <T> ImmutableContextMap<T> copyOf(Map<String, ? extends T> map) {
+		ImmutableContextMap<T> result = empty();
+		if (map == null) {
+			return result;
+		}
+		for (Map.Entry<String, ? extends T> entry : map.entrySet()) {
+			result = result.with(entry.getKey(), entry.getValue());
+		}
+		return result;
+	}
+
+	int size() {
+		return keys.length;
+	}
+
+	boolean isEmpty() {
+		return keys.length == 0;
+	}
+
+	@SuppressWarnings("unchecked")
+	T get(String key) {
+		int index = indexOf(key);
+		return index < 0 ? null : (T) LazyValue.resolve(values[index]);
+	}
+
+	/**
+	 * 读取原始值，延迟值不计算
+	 */
+	Object getRaw(String key) {
+		int index = indexOf(key);
+		return index < 0 ? null : values[index];
+	}
+
+	/**
+	 * 返回包含该key的新实例，当前实例保持不变
+	 * <p>
+	 * value为null时等价于{@link #without(String)}，与ConcurrentHashMap不接受null值的行为保持一致
+	 * </p>
+	 */
+	ImmutableContextMap<T> with(String key, T value) {
+		if (value == null) {
+			return without(key);
+		}
+		int index = indexOf(key);
+		if (index >= 0) {
+			if (values[index] == value) {
+				return this;
+			}
+			Object[] newValues = values.clone();
+			newValues[index] = value;
+			return new ImmutableContextMap<>(hashes, keys, newValues);
+		}
+		int insertAt = -(index + 1);
+		int length = keys.length;
+		int[] newHashes = new int[length + 1];
+		String[] newKeys = new String[length + 1];
+		Object[] newValues = new Object[length + 1];
+		System.arraycopy(hashes, 0, newHashes, 0, insertAt);
+		System.arraycopy(keys, 0, newKeys, 0, insertAt);
+		System.arraycopy(values, 0, newValues, 0, insertAt);
+		newHashes[insertAt] = key.hashCode();
+		newKeys[insertAt] = key;
+		newValues[insertAt] = value;
+		System.arraycopy(hashes, insertAt, newHashes, insertAt + 1, length - insertAt);
+		System.arraycopy(keys, insertAt, newKeys, insertAt + 1, length - insertAt);
+		System.arraycopy(values, insertAt, newValues, insertAt + 1, length - insertAt);
+		return new ImmutableContextMap<>(newHashes, newKeys, newValues);
+	}
+
+	/**
+	 * 返回不包含该key的新实例，key不存在时返回当前实例
+	 */
+	ImmutableContextMap<T> without(String key) {
+		int index = indexOf(key);
+		if (index < 0) {
+			return this;
+		}
+		int length = keys.length;
+		if (length == 1) {
+			return empty();
+		}
+		int[] newHashes = new int[length - 1];
+		String[] newKeys = new String[length - 1];
+		Object[] newValues = new Object[length - 1];
+		System.arraycopy(hashes, 0, newHashes, 0, index);
+		System.arraycopy(keys, 0, newKeys, 0, index);
+		System.arraycopy(values, 0, newValues, 0, index);
+		System.arraycopy(hashes, index + 1, newHashes, index, length - index - 1);
+		System.arraycopy(keys, index + 1, newKeys, index, length - index - 1);
+		System.arraycopy(values, index + 1, newValues, index, length - index - 1);
+		return new ImmutableContextMap<>(newHashes, newKeys, newValues);
+	}
+
+	/**
+	 * 只读Map视图，不拷贝数据，延迟值在读取条目的值时才计算
+	 */
+	Map<String, T> asMap() {
+		return new MapView(true);
+	}
+
+	/**
+	 * 只读Map视图，延迟值原样返回
+	 */
+	@SuppressWarnings("unchecked")
+	Map<String, Object> asRawMap() {
+		return (Map<String, Object>) new MapView(false);
+	}
+
+	/**
+	 * 查找key的下标
+	 * @return 存在时返回下标，否则返回 -(插入点 + 1)
+	 */
+	private int indexOf(String key) {
+		int hash = key.hashCode();
+		int index = Arrays.binarySearch(hashes, hash);
+		if (index < 0) {
+			return index;
+		}
+		// hash冲突时向两侧线性查找
+		int low = index;
+		while (low > 0 && hashes[low - 1] == hash) {
+			low--;
+		}
+		int high = low;
+		while (high < hashes.length && hashes[high] == hash) {
+			if (keys[high].equals(key)) {
+				return high;
+			}
+			high++;
+		}
+		return -(high + 1);
+	}
+
+	@Override
+	public String toString() {
+		// 打印日志不触发延迟值的计算
+		return asRawMap().toString();
+	}
+
+	private final class MapView extends AbstractMap<String, T> {
+
+		private final boolean resolve;
+
+		private MapView(boolean resolve) {
+			this.resolve = resolve;
+		}
+
+		@Override
+		public int size() {
+			return keys.length;
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return key instanceof String && indexOf((String) key) >= 0;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public T get(Object key) {
+			if (!(key instanceof String)) {
+				return null;
+			}
+			return resolve ? ImmutableContextMap.this.get((String) key) : (T) getRaw((String) key);
+		}
+
+		@Override
+		public Set<Entry<String, T>> entrySet() {
+			return new AbstractSet<>() {
+				@Override
+				public int size() {
+					return keys.length;
+				}
+
+				@Override
+				public Iterator<Entry<String, T>> iterator() {
+					return new Iterator<>() {
+						private int cursor;
+
+						@Override
+						public boolean hasNext() {
+							return cursor < keys.length;
+						}
+
+						@Override
+						@SuppressWarnings("unchecked")
+						public Entry<String, T> next() {
+							if (cursor >= keys.length) {
+								throw new NoSuchElementException();
+							}
+							int index = cursor++;
+							if (resolve && values[index] instanceof LazyValue) {
+								return new LazyEntry(keys[index], (LazyValue<T>) values[index]);
+							}
+							return new SimpleImmutableEntry<>(keys[index], (T) values[index]);
+						}
+					};
+				}
+			};
+		}
+	}
+
+	/**
+	 * 延迟值的条目，读取值时才计算，遍历key不会触发计算
+	 */
+	private final class LazyEntry implements Map.Entry<String, T> {
+
+		private final String key;
+
+		private final LazyValue<T> lazy;
+
+		private LazyEntry(String key, LazyValue<T> lazy) {
+			this.key = key;
+			this.lazy = lazy;
+		}
+
+		@Override
+		public String getKey() {
+			return key;
+		}
+
+		@Override
+		public T getValue() {
+			return lazy.get();
+		}
+
+		@Override
+		public T setValue(T value) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Map.Entry)) {
+				return false;
+			}
+			Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+			return key.equals(entry.getKey()) && Objects.equals(getValue(), entry.getValue());
+		}
+
+		@Override
+		public int hashCode() {
+			return key.hashCode() ^ Objects.hashCode(getValue());
+		}
+
+		@Override
+		public String toString() {
+			return key + "=" + getValue();
+		}
+	}
+}
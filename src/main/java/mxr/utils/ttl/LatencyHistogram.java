@@ -0,0 +1,205 @@
+package mxr.utils.ttl;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 分段无锁的对数线性直方图
+ * <p>
+ * 按HDR直方图的方式划分桶：每个2的幂区间再等分为32个子桶，相对误差约3%；小于64纳秒的值精确记录，
+ * 超过约68.7秒（2^36纳秒）的值计入最后一个桶，最大值单独精确记录。
+ * 记录时按线程ID选择分段，只对分段中的一个计数执行原子自增，不加锁也不分配对象，适合在每个任务上调用。
+ * </p>
+ * <p>
+ * 快照逐桶读取各分段，与并发的记录之间不是原子的；{@link #snapshotAndReset()}逐桶清零，清零期间的记录计入下一个区间。
+ * {@link #totalCount()}与{@link #totalNanos()}不受清零影响，单调递增，供Micrometer的FunctionTimer读取
+ * </p>
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    /** 可区分的最大值的位数，更大的值计入最后一个桶 */
+    private static final int MAX_VALUE_BITS = 36;
+
+    private static final long MAX_TRACKABLE = (1L << MAX_VALUE_BITS) - 1;
+
+    static final int BUCKET_COUNT = bucketIndex(MAX_TRACKABLE) + 1;
+
+    /** 分段数组中桶计数之后依次存放记录数、总和与最大值 */
+    private static final int COUNT = BUCKET_COUNT;
+
+    private static final int SUM = BUCKET_COUNT + 1;
+
+    private static final int MAX = BUCKET_COUNT + 2;
+
+    private static final int STRIPE_MAX = 8;
+
+    private final AtomicLongArray[] stripes;
+
+    private final int mask;
+
+    /** 已清零区间的记录数，受this保护 */
+    private long resetCount;
+
+    /** 已清零区间的总和，受this保护 */
+    private long resetNanos;
+
+    public LatencyHistogram() {
+        int count = Integer.highestOneBit(Math.min(Math.max(Runtime.getRuntime().availableProcessors(), 1), STRIPE_MAX));
+        this.stripes = new AtomicLongArray[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new AtomicLongArray(BUCKET_COUNT + 3);
+        }
+        this.mask = count - 1;
+    }
+
+    /**
+     * 记录一个值，负值按0记录
+     * @param nanos 耗时，单位纳秒
+     */
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0L);
+        AtomicLongArray stripe = stripes[(int) Thread.currentThread().getId() & mask];
+        stripe.incrementAndGet(bucketIndex(Math.min(value, MAX_TRACKABLE)));
+        stripe.incrementAndGet(COUNT);
+        stripe.addAndGet(SUM, value);
+        long max = stripe.get(MAX);
+        while (value > max && !stripe.compareAndSet(MAX, max, value)) {
+            max = stripe.get(MAX);
+        }
+    }
+
+    /**
+     * 自创建或上次重置以来的累计快照
+     */
+    public Snapshot snapshot() {
+        return collect(false);
+    }
+
+    /**
+     * 取得快照并清零，返回的快照即上一个区间的记录
+     */
+    public synchronized Snapshot snapshotAndReset() {
+        Snapshot snapshot = collect(true);
+        resetCount += snapshot.count;
+        resetNanos += snapshot.sum;
+        return snapshot;
+    }
+
+    /**
+     * 自创建以来的记录数，不受{@link #snapshotAndReset()}影响
+     */
+    public synchronized long totalCount() {
+        long count = resetCount;
+        for (AtomicLongArray stripe : stripes) {
+            count += stripe.get(COUNT);
+        }
+        return count;
+    }
+
+    /**
+     * 自创建以来记录值的总和，单位纳秒，不受{@link #snapshotAndReset()}影响
+     */
+    public synchronized long totalNanos() {
+        long sum = resetNanos;
+        for (AtomicLongArray stripe : stripes) {
+            sum += stripe.get(SUM);
+        }
+        return sum;
+    }
+
+    private Snapshot collect(boolean reset) {
+        long[] counts = new long[BUCKET_COUNT];
+        long count = 0L;
+        long sum = 0L;
+        long max = 0L;
+        for (AtomicLongArray stripe : stripes) {
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                counts[i] += reset ? stripe.getAndSet(i, 0L) : stripe.get(i);
+            }
+            count += reset ? stripe.getAndSet(COUNT, 0L) : stripe.get(COUNT);
+            sum += reset ? stripe.getAndSet(SUM, 0L) : stripe.get(SUM);
+            max = Math.max(max, reset ? stripe.getAndSet(MAX, 0L) : stripe.get(MAX));
+        }
+        return new Snapshot(counts, count, sum, max);
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKET_COUNT + (int) ((value >>> shift) & (SUB_BUCKET_COUNT - 1));
+    }
+
+    /**
+     * 桶内的最小值
+     */
+    static long lowerBound(int index) {
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        if (shift <= 0) {
+            return index;
+        }
+        return (long) (SUB_BUCKET_COUNT + index % SUB_BUCKET_COUNT) << shift;
+    }
+
+    /**
+     * 直方图快照，单位纳秒
+     */
+    public static final class Snapshot {
+
+        private final long[] counts;
+
+        private final long count;
+
+        private final long sum;
+
+        private final long max;
+
+        private Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public double getMean() {
+            return count == 0 ? 0.0 : (double) sum / count;
+        }
+
+        /**
+         * 百分位数，取所在桶的上界且不超过最大值
+         * @param percentile 0到100之间
+         * @return 没有记录时返回0
+         */
+        public long getValueAtPercentile(double percentile) {
+            long total = 0L;
+            for (long c : counts) {
+                total += c;
+            }
+            if (total == 0L) {
+                return 0L;
+            }
+            long rank = Math.max(1L, (long) Math.ceil(Math.min(Math.max(percentile, 0.0), 100.0) / 100.0 * total));
+            long seen = 0L;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    long upper = i + 1 < counts.length ? lowerBound(i + 1) - 1 : MAX_TRACKABLE;
+                    return Math.min(upper, max);
+                }
+            }
+            return max;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package mxr.utils.ttl;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.function.Supplier;
+
+/**
+ * 延迟计算并缓存的上下文值
+ * <p>
+ * 首次读取时在读取线程上计算一次并缓存，之后所有共享同一上下文快照的任务直接读取缓存的结果；
+ * 计算抛出异常时不缓存，下次读取重新计算。序列化时先完成计算，只写出结果
+ * </p>
+ * @param <T> 值类型
+ */
+final class LazyValue<T> implements Serializable {
+
+	@Serial
+	private static final long serialVersionUID = 4302158741659232171L;
+
+	private static final Object PENDING = new Object();
+
+	private transient Supplier<? extends T> supplier;
+
+	private volatile Object value = PENDING;
+
+	// 计算中，受this保护，用于发现计算过程中读取自身的循环依赖
+	private transient boolean computing;
+
+	LazyValue(Supplier<? extends T> supplier) {
+		if (supplier == null) {
+			throw new NullPointerException("supplier不能为空");
+		}
+		this.supplier = supplier;
+	}
+
+	@SuppressWarnings("unchecked")
+	T get() {
+		Object current = value;
+		if (current != PENDING) {
+			return (T) current;
+		}
+		synchronized (this) {
+			current = value;
+			if (current == PENDING) {
+				if (computing) {
+					throw new IllegalStateException("延迟属性在计算过程中读取了自身");
+				}
+				computing = true;
+				try {
+					current = supplier.get();
+				} finally {
+					computing = false;
+				}
+				value = current;
+				supplier = null;
+			}
+		}
+		return (T) current;
+	}
+
+	boolean isComputed() {
+		return value != PENDING;
+	}
+
+	/**
+	 * 延迟值返回计算结果，其他值原样返回
+	 */
+	static Object resolve(Object value) {
+		return value instanceof LazyValue ? ((LazyValue<?>) value).get() : value;
+	}
+
+	/**
+	 * 是否为尚未计算的延迟值
+	 */
+	static boolean isPending(Object value) {
+		return value instanceof LazyValue && !((LazyValue<?>) value).isComputed();
+	}
+
+	@Serial
+	private Object writeReplace() {
+		return get();
+	}
+
+	@Override
+	public String toString() {
+		Object current = value;
+		return current == PENDING ? "LazyValue(pending)" : String.valueOf(current);
+	}
+}
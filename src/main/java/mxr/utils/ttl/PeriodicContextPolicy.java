@@ -0,0 +1,27 @@
+package mxr.utils.ttl;
+
+/**
+ * 周期任务的上下文策略
+ * <p>
+ * 周期任务可能在调度线程池中存活到应用关闭，按回放方式执行时会一直持有调度时捕获的全部TTL值，
+ * 请求对象随之无法回收。可按任务对上下文的实际需要选择策略
+ * </p>
+ */
+public enum PeriodicContextPolicy {
+
+    /**
+     * 调度时捕获一次，每次执行前回放（默认），与一次性任务的行为一致
+     */
+    REPLAY,
+
+    /**
+     * 调度时把上下文属性复制为只读的冻结副本，每次执行时绑定该副本。
+     * 不持有请求上下文对象与其他TTL值，写入会抛出UnsupportedOperationException
+     */
+    FROZEN,
+
+    /**
+     * 不携带上下文，每次执行时绑定只读的空上下文，避免任务内getContext()在工作线程上遗留上下文
+     */
+    NONE
+}
@@ -0,0 +1,214 @@
+package mxr.utils.ttl;
+
+import org.reactivestreams.Subscription;
+import reactor.core.CorePublisher;
+import reactor.core.CoreSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxOperator;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoOperator;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.context.Context;
+
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * BaseContext与Reactor Context的桥接
+ * <p>
+ * 反应式链路中的操作符会在不同线程上执行，TTL无法跟随。请求上下文改为存放在Reactor的Context中（key为{@link #CONTEXT_KEY}），
+ * 在以下位置绑定到线程，使TtlContextHolderUtil的API在WebFlux中照常可用：
+ * <ul>
+ *     <li>{@link #restore(Mono)}/{@link #restore(Flux)}：订阅过程以及之后向下游发出的每个信号期间进入请求作用域，
+ *     下游同步执行的操作符可以读写上下文。放在线程切换（WebClient调用、publishOn等）之后即可，无需每个操作符单独处理</li>
+ *     <li>{@link #installScheduleHook()}：通过Schedulers.onScheduleHook，在提交到Reactor调度器的任务上携带提交时派生的子上下文。
+ *     与TTL线程池的子任务一样，读取落到提交时冻结的父视图上，写入与删除只进入该任务私有的覆盖层，请求上下文与其他任务不受影响。
+ *     子上下文由钩子内部派生，没有调用{@link CopyOnWriteContextImpl#mergeBack()}的时机，任务的写入随任务结束丢弃；
+ *     需要带回请求上下文的结果应作为反应式链路的数据向下游传递</li>
+ * </ul>
+ * 上下文通过{@link #contextWrite(BaseContext)}写入，WebFlux中由ReactiveRequestContextFilter为每个请求创建
+ * </p>
+ */
+public final class ReactorContextBridge {
+
+    /** Reactor Context中存放上下文的key */
+    public static final Class<BaseContext> CONTEXT_KEY = BaseContext.class;
+
+    /** 调度钩子的名称 */
+    private static final String SCHEDULE_HOOK_KEY = ReactorContextBridge.class.getName();
+
+    private ReactorContextBridge() {
+        throw new UnsupportedOperationException("ReactorContextBridge类禁止实例化");
+    }
+
+    /**
+     * 把上下文写入Reactor Context
+     * <pre>
+     *     mono.transform(ReactorContextBridge::restore).contextWrite(ReactorContextBridge.contextWrite(context));
+     * </pre>
+     * @param context 请求上下文
+     * @return 用于contextWrite的函数
+     */
+    public static Function<Context, Context> contextWrite(BaseContext<Object> context) {
+        return ctx -> ctx.put(CONTEXT_KEY, context);
+    }
+
+    /**
+     * 把当前线程上下文的快照写入Reactor Context，用于在Servlet请求或TTL线程池中发起的反应式调用
+     * @return 用于contextWrite的函数
+     */
+    public static Function<Context, Context> captureCurrent() {
+        BaseContext<Object> context = TtlContextHolderUtil.currentContextOrNull();
+        if (context == null) {
+            return Function.identity();
+        }
+        return contextWrite(TtlContextHolderUtil.snapshot(context));
+    }
+
+    /**
+     * 读取Reactor Context中的上下文，不经过线程绑定
+     * @return Reactor Context中没有上下文时为空
+     */
+    @SuppressWarnings("unchecked")
+    public static Mono<BaseContext<Object>> currentContext() {
+        return Mono.deferContextual(ctx -> Mono.justOrEmpty((BaseContext<Object>) ctx.getOrDefault(CONTEXT_KEY, null)));
+    }
+
+    /**
+     * 在请求作用域内执行，用于订阅阶段之前的同步代码
+     * @param context 请求上下文
+     * @param supplier 需要读写上下文的代码
+     * @return supplier的返回值
+     */
+    public static <T> T callInScope(BaseContext<Object> context, Supplier<T> supplier) {
+        Object scope = TtlContextHolderUtil.enterRequestScope(context);
+        try {
+            return supplier.get();
+        } finally {
+            TtlContextHolderUtil.exitRequestScope(scope);
+        }
+    }
+
+    /**
+     * 订阅期间以及之后向下游发出的信号期间，把Reactor Context中的上下文绑定到当前线程
+     * @param source 上游
+     * @return 绑定上下文后的Mono
+     */
+    public static <T> Mono<T> restore(Mono<T> source) {
+        return new MonoOperator<T, T>(source) {
+            @Override
+            public void subscribe(CoreSubscriber<? super T> actual) {
+                subscribeInScope(source, actual);
+            }
+        };
+    }
+
+    /**
+     * 订阅期间以及之后向下游发出的信号期间，把Reactor Context中的上下文绑定到当前线程
+     * @param source 上游
+     * @return 绑定上下文后的Flux
+     */
+    public static <T> Flux<T> restore(Flux<T> source) {
+        return new FluxOperator<T, T>(source) {
+            @Override
+            public void subscribe(CoreSubscriber<? super T> actual) {
+                subscribeInScope(source, actual);
+            }
+        };
+    }
+
+    /**
+     * 安装Reactor调度钩子，提交到调度器的任务携带提交时的上下文快照
+     * <p>
+     * 快照通过虚拟线程模式的上下文载体绑定，不经过TTL的capture/replay；提交线程没有上下文时任务原样提交
+     * </p>
+     */
+    public static void installScheduleHook() {
+        ContextCarrier carrier = TtlContextHolderUtil.carrier();
+        Schedulers.onScheduleHook(SCHEDULE_HOOK_KEY, task -> {
+            BaseContext<Object> context = TtlContextHolderUtil.currentContextOrNull();
+            if (context == null) {
+                return task;
+            }
+            BaseContext<Object> snapshot = TtlContextHolderUtil.snapshot(context);
+            return () -> carrier.run(snapshot, task);
+        });
+    }
+
+    /**
+     * 移除Reactor调度钩子
+     */
+    public static void uninstallScheduleHook() {
+        Schedulers.resetOnScheduleHook(SCHEDULE_HOOK_KEY);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void subscribeInScope(CorePublisher<T> source, CoreSubscriber<? super T> actual) {
+        BaseContext<Object> context = (BaseContext<Object>) actual.currentContext().getOrDefault(CONTEXT_KEY, null);
+        if (context == null) {
+            source.subscribe(actual);
+            return;
+        }
+        Object scope = TtlContextHolderUtil.enterRequestScope(context);
+        try {
+            source.subscribe(new ScopedSubscriber<>(actual, context));
+        } finally {
+            TtlContextHolderUtil.exitRequestScope(scope);
+        }
+    }
+
+    /**
+     * 向下游发出信号期间绑定上下文的订阅者
+     */
+    private static final class ScopedSubscriber<T> implements CoreSubscriber<T> {
+
+        private final CoreSubscriber<? super T> actual;
+
+        private final BaseContext<Object> context;
+
+        private ScopedSubscriber(CoreSubscriber<? super T> actual, BaseContext<Object> context) {
+            this.actual = actual;
+            this.context = context;
+        }
+
+        @Override
+        public Context currentContext() {
+            return actual.currentContext();
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            actual.onSubscribe(subscription);
+        }
+
+        @Override
+        public void onNext(T value) {
+            Object scope = TtlContextHolderUtil.enterRequestScope(context);
+            try {
+                actual.onNext(value);
+            } finally {
+                TtlContextHolderUtil.exitRequestScope(scope);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            Object scope = TtlContextHolderUtil.enterRequestScope(context);
+            try {
+                actual.onError(throwable);
+            } finally {
+                TtlContextHolderUtil.exitRequestScope(scope);
+            }
+        }
+
+        @Override
+        public void onComplete() {
+            Object scope = TtlContextHolderUtil.enterRequestScope(context);
+            try {
+                actual.onComplete();
+            } finally {
+                TtlContextHolderUtil.exitRequestScope(scope);
+            }
+        }
+    }
+}
@@ -1,11 +1,20 @@
 package mxr.utils.ttl;
 
 import com.alibaba.ttl.threadpool.TtlExecutors;
+import com.alibaba.ttl.threadpool.TtlForkJoinPoolHelper;
 
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @ClassName TtlFactory
@@ -14,14 +23,30 @@ import java.util.concurrent.ThreadFactory;
  * @date 2025/6/4 16:14
  */
 public class TTLExecutorFactory {
-    /** 默认线程池核心线程数 */
-    private static final int DEFAULT_THREAD_POOL_SIZE = 2;
+    /** 共享线程池默认核心线程数，取CPU核数 */
+    public static final int DEFAULT_CORE_POOL_SIZE = Runtime.getRuntime().availableProcessors();
+
+    /** 共享线程池默认最大线程数 */
+    public static final int DEFAULT_MAX_POOL_SIZE = DEFAULT_CORE_POOL_SIZE * 2;
+
+    /** 共享线程池默认队列容量 */
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+    /** 共享线程池默认非核心线程空闲存活时间（秒） */
+    public static final long DEFAULT_KEEP_ALIVE_SECONDS = 60L;
+
+    /** 共享线程池名称 */
+    public static final String SHARED_POOL_NAME = "shared";
+
+    /** 未命名线程池的序号 */
+    private static final AtomicInteger POOL_SEQUENCE = new AtomicInteger(1);
 
     /** TTL线程池标识 */
     protected static final String TTL_EXECUTOR_IDENTIFIER = "TTL_EXECUTOR";
     
-    /** 共享TTL线程池单例 */
-    private static final ExecutorService SHARED_TTL_EXECUTOR;
+    /** 共享TTL线程池单例，由Spring配置注入；非Spring环境下首次使用时按默认参数创建 */
+    private static volatile ExecutorService sharedTtlExecutor;
+
     /**
      * 创建固定大小的TTL线程池
      * <p>
@@ -32,41 +57,106 @@ public class TTLExecutorFactory {
      * @param corePoolSize 线程池核心线程数
      * @return 经过TTL包装的固定大小线程池
      */
-    public static ExecutorService newFixedThreadPool(int corePoolSize) {
-        // 创建自定义线程工厂
-        ThreadFactory threadFactory = r -> {
-            Thread thread = Executors.defaultThreadFactory().newThread(r);
-            // 设置线程名称包含TTL线程池标识
-            thread.setName(TTL_EXECUTOR_IDENTIFIER + "-" + thread.getName());
-            return thread;
-        };
-        return TtlExecutors.getTtlExecutorService(Executors.newFixedThreadPool(corePoolSize, threadFactory));
-    }
-
-    // 静态初始化块，用于创建并配置共享TTL线程池
-    static {
-        // 创建自定义线程工厂，为共享线程池的线程添加特殊标识
-        ThreadFactory sharedThreadFactory = r -> {
-            Thread thread = Executors.defaultThreadFactory().newThread(r);
-            // 设置线程名称包含共享TTL线程池标识
-            thread.setName(TTL_EXECUTOR_IDENTIFIER + "-" + thread.getName());
-            return thread;
-        };
-        
-        // 使用自定义线程工厂创建线程池，并用TTL包装
-        SHARED_TTL_EXECUTOR = TtlExecutors.getTtlExecutorService(
-                Executors.newFixedThreadPool(DEFAULT_THREAD_POOL_SIZE, sharedThreadFactory));
+    public static ContextExecutorService newFixedThreadPool(int corePoolSize) {
+        return newFixedThreadPool(nextPoolName("fixed"), corePoolSize);
+    }
+
+    /**
+     * 创建固定大小的命名TTL线程池
+     * @param poolName 线程池名称，用于指标的name标签
+     * @param corePoolSize 线程池核心线程数
+     * @return 经过TTL包装的固定大小线程池
+     * @see #newFixedThreadPool(int)
+     */
+    public static ContextExecutorService newFixedThreadPool(String poolName, int corePoolSize) {
+        // 创建TTL线程工厂，工作线程带有可信线程标记
+        ThreadFactory threadFactory = new TtlThreadFactory();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(corePoolSize, corePoolSize,
+                0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), threadFactory);
+        return new ContextExecutorService(poolName, executor, monitor(poolName, executor));
+    }
+
+    /**
+     * 创建有界的TTL线程池
+     * <p>
+     * 该线程池会自动传递上下文到子线程，线程数、队列与拒绝策略均由调用方指定，
+     * 共享TTL线程池即通过此方法按配置创建
+     * </p>
+     * @param corePoolSize 核心线程数
+     * @param maxPoolSize 最大线程数
+     * @param keepAliveSeconds 非核心线程空闲存活时间（秒）
+     * @param workQueue 任务队列
+     * @param rejectedHandler 队列已满且线程数已达上限时的拒绝策略
+     * @param threadPriority 线程优先级
+     * @return 经过TTL包装的线程池
+     */
+    public static ContextExecutorService newThreadPool(int corePoolSize, int maxPoolSize, long keepAliveSeconds,
+                                                BlockingQueue<Runnable> workQueue,
+                                                RejectedExecutionHandler rejectedHandler,
+                                                int threadPriority) {
+        return newThreadPool(nextPoolName("pool"), corePoolSize, maxPoolSize, keepAliveSeconds,
+                workQueue, rejectedHandler, threadPriority);
+    }
+
+    /**
+     * 创建有界的命名TTL线程池
+     * @param poolName 线程池名称，用于指标的name标签
+     * @see #newThreadPool(int, int, long, BlockingQueue, RejectedExecutionHandler, int)
+     */
+    public static ContextExecutorService newThreadPool(String poolName, int corePoolSize, int maxPoolSize,
+                                                long keepAliveSeconds,
+                                                BlockingQueue<Runnable> workQueue,
+                                                RejectedExecutionHandler rejectedHandler,
+                                                int threadPriority) {
+        ThreadFactory threadFactory = new TtlThreadFactory(threadPriority);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(corePoolSize, maxPoolSize,
+                keepAliveSeconds, TimeUnit.SECONDS, workQueue, threadFactory, rejectedHandler);
+        return new ContextExecutorService(poolName, executor, monitor(poolName, executor));
+    }
+
+    /**
+     * 设置共享TTL线程池
+     * <p>
+     * 由Spring配置在启动时调用，替换后原先按默认参数创建的线程池会在执行完已提交任务后关闭
+     * </p>
+     * @param executorService 经过TTL包装的线程池
+     * @throws IllegalArgumentException 当线程池未经过TTL包装时抛出
+     */
+    public static void setSharedTtlExecutor(ExecutorService executorService) {
+        if (executorService == null || !TtlExecutors.isTtlWrapper(executorService)) {
+            throw new IllegalArgumentException("共享线程池必须是TTL包装的线程池");
+        }
+        ExecutorService previous;
+        synchronized (TTLExecutorFactory.class) {
+            previous = sharedTtlExecutor;
+            sharedTtlExecutor = executorService;
+        }
+        if (previous != null && previous != executorService) {
+            previous.shutdown();
+        }
     }
     
     /**
      * 获取默认的共享TTL线程池
      * <p>
-     * 注意：由于使用固定大小线程池，长期闲置时可能造成资源浪费，建议根据业务需求调整实现方式
+     * Spring环境下返回按 ttl.executor.shared 配置创建的线程池；
+     * 未经配置时按默认参数（CPU核数、有界队列、调用方执行拒绝策略）在首次使用时创建
      * </p>
      * @return 默认的TTL包装线程池实例（单例）
      */
     public static ExecutorService getSharedTtlExecutor() {
-        return SHARED_TTL_EXECUTOR;
+        ExecutorService executor = sharedTtlExecutor;
+        if (executor != null) {
+            return executor;
+        }
+        synchronized (TTLExecutorFactory.class) {
+            if (sharedTtlExecutor == null) {
+                sharedTtlExecutor = newThreadPool(SHARED_POOL_NAME, DEFAULT_CORE_POOL_SIZE, DEFAULT_MAX_POOL_SIZE,
+                        DEFAULT_KEEP_ALIVE_SECONDS, new LinkedBlockingQueue<>(DEFAULT_QUEUE_CAPACITY),
+                        new ThreadPoolExecutor.CallerRunsPolicy(), Thread.NORM_PRIORITY);
+            }
+            return sharedTtlExecutor;
+        }
     }
 
     /**
@@ -77,15 +167,22 @@ public class TTLExecutorFactory {
      * </p>
      * @return 默认的TTL包装线程池实例
      */
-    public static ExecutorService newCachedThreadPool() {
-        // 创建自定义线程工厂
-        ThreadFactory threadFactory = r -> {
-            Thread thread = Executors.defaultThreadFactory().newThread(r);
-            // 设置线程名称包含TTL线程池标识
-            thread.setName(TTL_EXECUTOR_IDENTIFIER + "-" + thread.getName());
-            return thread;
-        };
-        return TtlExecutors.getTtlExecutorService(Executors.newCachedThreadPool(threadFactory));
+    public static ContextExecutorService newCachedThreadPool() {
+        return newCachedThreadPool(nextPoolName("cached"));
+    }
+
+    /**
+     * 创建缓存的命名TTL线程池
+     * @param poolName 线程池名称，用于指标的name标签
+     * @return 默认的TTL包装线程池实例
+     * @see #newCachedThreadPool()
+     */
+    public static ContextExecutorService newCachedThreadPool(String poolName) {
+        // 创建TTL线程工厂，工作线程带有可信线程标记
+        ThreadFactory threadFactory = new TtlThreadFactory();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(0, Integer.MAX_VALUE,
+                60L, TimeUnit.SECONDS, new SynchronousQueue<>(), threadFactory);
+        return new ContextExecutorService(poolName, executor, monitor(poolName, executor));
     }
 
     /**
@@ -96,17 +193,178 @@ public class TTLExecutorFactory {
      * </p>
      * @return 默认的TTL包装线程池实例
      */
-    public static ScheduledExecutorService newScheduledThreadPool(int corePoolSize) {
-        // 创建自定义线程工厂
-        ThreadFactory threadFactory = r -> {
-            Thread thread = Executors.defaultThreadFactory().newThread(r);
-            // 设置线程名称包含TTL线程池标识
-            thread.setName(TTL_EXECUTOR_IDENTIFIER + "-" + thread.getName());
-            return thread;
-        };
-        return TtlExecutors.getTtlScheduledExecutorService(
-                Executors.newScheduledThreadPool(corePoolSize, threadFactory)
-        );
+    public static ContextScheduledExecutorService newScheduledThreadPool(int corePoolSize) {
+        return newScheduledThreadPool(nextPoolName("scheduled"), corePoolSize);
+    }
+
+    /**
+     * 创建命名的调度TTL线程池
+     * @param poolName 线程池名称，用于指标的name标签
+     * @param corePoolSize 线程池核心线程数
+     * @return 默认的TTL包装线程池实例
+     * @see #newScheduledThreadPool(int)
+     */
+    public static ContextScheduledExecutorService newScheduledThreadPool(String poolName, int corePoolSize) {
+        return newScheduledThreadPool(poolName, corePoolSize, PeriodicContextPolicy.REPLAY);
+    }
+
+    /**
+     * 创建命名的调度TTL线程池，并指定周期任务默认的上下文策略
+     * <p>
+     * 大量长期运行的周期任务建议使用FROZEN或NONE，避免每个任务一直持有调度时的请求上下文
+     * </p>
+     * @param poolName 线程池名称，用于指标的name标签
+     * @param corePoolSize 线程池核心线程数
+     * @param periodicPolicy 周期任务默认的上下文策略
+     * @return 默认的TTL包装线程池实例
+     */
+    public static ContextScheduledExecutorService newScheduledThreadPool(String poolName, int corePoolSize,
+                                                                         PeriodicContextPolicy periodicPolicy) {
+        // 创建TTL线程工厂，工作线程带有可信线程标记
+        ThreadFactory threadFactory = new TtlThreadFactory();
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(corePoolSize, threadFactory);
+        // 周期任务取消后立即移出队列，不再持有其上下文
+        executor.setRemoveOnCancelPolicy(true);
+        return new ContextScheduledExecutorService(poolName, executor, monitor(poolName, executor), periodicPolicy);
+    }
+
+    /**
+     * 创建按上下文属性公平调度的TTL线程池
+     * <p>
+     * 任务按提交线程上下文中keyName属性的值分区排队，各分区轮流执行，单个分区积压不会阻塞其他分区。
+     * 分区权重与并发上限可通过{@link FairContextExecutorService#setWeight(String, int)}、
+     * {@link FairContextExecutorService#setMaxConcurrency(String, int)}调整
+     * </p>
+     * @param keyName 分区属性的key，例如tenantId
+     * @param parallelism 工作线程数
+     * @return 公平调度的TTL线程池
+     */
+    public static FairContextExecutorService newFairExecutor(String keyName, int parallelism) {
+        return newFairExecutor(nextPoolName("fair"), keyName, parallelism, 0, 0);
+    }
+
+    /**
+     * 创建按上下文属性公平调度的命名TTL线程池
+     * @param poolName 线程池名称，用于指标的name标签
+     * @param keyName 分区属性的key
+     * @param parallelism 工作线程数
+     * @param maxConcurrencyPerKey 每个分区默认的并发上限，小于等于0表示只受工作线程数限制
+     * @param maxQueuedPerKey 每个分区的队列容量，队列已满时拒绝该分区的新任务，小于等于0表示不限制
+     * @return 公平调度的TTL线程池
+     * @see #newFairExecutor(String, int)
+     */
+    public static FairContextExecutorService newFairExecutor(String poolName, String keyName, int parallelism,
+                                                             int maxConcurrencyPerKey, int maxQueuedPerKey) {
+        // 排队发生在各分区的队列中，交给线程池的任务数不超过工作线程数
+        ThreadFactory threadFactory = new TtlThreadFactory();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(parallelism, parallelism,
+                0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), threadFactory);
+        return new FairContextExecutorService(poolName, executor, monitor(poolName, executor),
+                keyName, parallelism, maxConcurrencyPerKey, maxQueuedPerKey);
+    }
+
+    /**
+     * 创建支持上下文传递的ForkJoinPool
+     * <p>
+     * 适合请求内CPU密集的并行计算：并行流通过{@link ContextForkJoinPool#parallel}在该线程池中执行，
+     * 递归任务继承TtlRecursiveTask/TtlRecursiveAction后通过{@link ContextForkJoinPool#invoke}提交，
+     * fork出的子任务无论被哪个工作线程窃取都能读取到上下文
+     * </p>
+     * @param parallelism 并行度，通常取CPU核数
+     * @return 经过TTL包装的ForkJoinPool
+     */
+    public static ContextForkJoinPool newForkJoinPool(int parallelism) {
+        return newForkJoinPool(nextPoolName("fork-join"), parallelism);
+    }
+
+    /**
+     * 创建命名的支持上下文传递的ForkJoinPool
+     * @param poolName 线程池名称
+     * @param parallelism 并行度，通常取CPU核数
+     * @return 经过TTL包装的ForkJoinPool
+     * @see #newForkJoinPool(int)
+     */
+    public static ContextForkJoinPool newForkJoinPool(String poolName, int parallelism) {
+        // 工作线程带有可信线程标记，且不继承创建线程的上下文
+        ForkJoinPool.ForkJoinWorkerThreadFactory threadFactory = TtlForkJoinPoolHelper
+                .getDisableInheritableForkJoinWorkerThreadFactory(
+                        new TtlForkJoinWorkerThreadFactory(TTL_EXECUTOR_IDENTIFIER + "-" + poolName + "-worker-"));
+        ForkJoinPool forkJoinPool = new ForkJoinPool(parallelism, threadFactory, null, false);
+        return new ContextForkJoinPool(poolName, forkJoinPool);
+    }
+
+    /**
+     * 创建基于虚拟线程的上下文传递执行器
+     * <p>
+     * 每个任务一个虚拟线程，适合大量阻塞IO的场景。上下文在提交时捕获快照并绑定到虚拟线程，
+     * 不经过TTL的capture/replay；虚拟线程不继承可继承的ThreadLocal，不复制提交线程上TTL的持有者，
+     * 任务中直接使用的其他InheritableThreadLocal同样读取不到提交线程的值。
+     * 需要Java 21及以上版本运行，低于该版本时抛出异常
+     * </p>
+     * @return 虚拟线程执行器
+     * @throws UnsupportedOperationException 运行环境不支持虚拟线程时抛出
+     */
+    public static ContextExecutorService newVirtualThreadExecutor() {
+        return newVirtualThreadExecutor(nextPoolName("virtual"));
+    }
+
+    /**
+     * 创建命名的虚拟线程上下文传递执行器，虚拟线程名称为 {poolName}-N
+     * @param poolName 执行器名称
+     * @return 虚拟线程执行器
+     * @throws UnsupportedOperationException 运行环境不支持虚拟线程时抛出
+     * @see #newVirtualThreadExecutor()
+     */
+    public static ContextExecutorService newVirtualThreadExecutor(String poolName) {
+        ExecutorService executor;
+        try {
+            // 以Java 17为编译目标，通过反射调用
+            // Thread.ofVirtual().name(prefix, 0).inheritInheritableThreadLocals(false).factory()，
+            // 不继承可继承的ThreadLocal，虚拟线程不复制提交线程上TTL的持有者
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, poolName + "-", 0L);
+            builder = builderType.getMethod("inheritInheritableThreadLocals", boolean.class).invoke(builder, false);
+            ThreadFactory threadFactory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+            executor = (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, threadFactory);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("虚拟线程需要Java 21及以上版本", e);
+        }
+        return new VirtualThreadContextExecutorService(poolName, executor);
+    }
+
+    /**
+     * 包装单个任务，在当前线程捕获上下文，执行时回放并在结束后恢复
+     * <p>
+     * 供Spring的TaskDecorator等外部线程池扩展点使用；已包装的任务原样返回
+     * </p>
+     * @param task 任务
+     * @return 携带上下文快照的任务
+     */
+    public static Runnable decorate(Runnable task) {
+        return task instanceof ContextTask ? task : ContextTask.of(task, TtlTaskListener.NOOP);
+    }
+
+    /**
+     * 为线程池注册指标与任务耗时直方图，并统计被拒绝的任务
+     */
+    private static TtlTaskListener monitor(String poolName, ThreadPoolExecutor executor) {
+        TaskLatencyRecorder recorder = TaskLatencyRecorder.bind(poolName);
+        TtlExecutorMetrics metrics = TtlExecutorMetrics.bind(poolName, executor, recorder);
+        RejectedExecutionHandler rejectedHandler = executor.getRejectedExecutionHandler();
+        executor.setRejectedExecutionHandler((r, e) -> {
+            metrics.onRejected();
+            rejectedHandler.rejectedExecution(r, e);
+        });
+        return TtlTaskListener.compose(metrics, recorder);
+    }
+
+    /**
+     * 生成未命名线程池的默认名称，例如 fixed-1
+     */
+    private static String nextPoolName(String type) {
+        return type + "-" + POOL_SEQUENCE.getAndIncrement();
     }
 
 }
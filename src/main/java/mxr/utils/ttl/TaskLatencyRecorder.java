@@ -0,0 +1,124 @@
+package mxr.utils.ttl;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 线程池任务各阶段耗时的进程内直方图
+ * <p>
+ * 为每个线程池记录排队、执行以及上下文捕获、回放、恢复耗时，调度线程池还记录周期任务的延迟与漂移。
+ * 记录代价为几次无竞争的原子自增，不经过Micrometer，可以在每个任务上记录。TTLExecutorFactory创建的平台线程池自动绑定，
+ * 按线程池名称登记，线程池关闭时注销；通过 /actuator/ttlexecutors 查看百分位数，
+ * {@link TtlExecutorMetrics}在采集指标时读取直方图发布到Micrometer
+ * </p>
+ * @see LatencyHistogram
+ */
+public final class TaskLatencyRecorder implements TtlTaskListener {
+
+    private static final Map<String, TaskLatencyRecorder> RECORDERS = new ConcurrentHashMap<>();
+
+    private final String name;
+
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+
+    private final LatencyHistogram execution = new LatencyHistogram();
+
+    private final LatencyHistogram capture = new LatencyHistogram();
+
+    private final LatencyHistogram replay = new LatencyHistogram();
+
+    private final LatencyHistogram restore = new LatencyHistogram();
+
+    private final LatencyHistogram lateness = new LatencyHistogram();
+
+    private final LatencyHistogram drift = new LatencyHistogram();
+
+    private TaskLatencyRecorder(String name) {
+        this.name = name;
+    }
+
+    /**
+     * 为线程池创建并登记记录器，同名线程池已登记时替换
+     * @param poolName 线程池名称
+     */
+    public static TaskLatencyRecorder bind(String poolName) {
+        TaskLatencyRecorder recorder = new TaskLatencyRecorder(poolName);
+        RECORDERS.put(poolName, recorder);
+        return recorder;
+    }
+
+    /**
+     * 已登记的记录器，按线程池名称索引
+     */
+    public static Map<String, TaskLatencyRecorder> recorders() {
+        return Collections.unmodifiableMap(RECORDERS);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /** 排队耗时 */
+    public LatencyHistogram getQueueWait() {
+        return queueWait;
+    }
+
+    /** 执行耗时 */
+    public LatencyHistogram getExecution() {
+        return execution;
+    }
+
+    /** 上下文捕获耗时 */
+    public LatencyHistogram getCapture() {
+        return capture;
+    }
+
+    /** 上下文回放耗时 */
+    public LatencyHistogram getReplay() {
+        return replay;
+    }
+
+    /** 上下文恢复耗时 */
+    public LatencyHistogram getRestore() {
+        return restore;
+    }
+
+    /** 周期任务相对预期开始时间的延迟 */
+    public LatencyHistogram getLateness() {
+        return lateness;
+    }
+
+    /** 周期任务相邻两次执行的延迟之差 */
+    public LatencyHistogram getDrift() {
+        return drift;
+    }
+
+    @Override
+    public void onCaptured(long captureNanos) {
+        capture.record(captureNanos);
+    }
+
+    @Override
+    public void onStarted(long queueWaitNanos, long replayNanos) {
+        queueWait.record(queueWaitNanos);
+        replay.record(replayNanos);
+    }
+
+    @Override
+    public void onPeriodicStarted(long latenessNanos, long driftNanos) {
+        lateness.record(latenessNanos);
+        drift.record(driftNanos);
+    }
+
+    @Override
+    public void onCompleted(long executionNanos, long restoreNanos) {
+        execution.record(executionNanos);
+        restore.record(restoreNanos);
+    }
+
+    @Override
+    public void onShutdown() {
+        RECORDERS.remove(name, this);
+    }
+}
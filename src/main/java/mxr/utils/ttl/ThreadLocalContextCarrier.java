@@ -0,0 +1,49 @@
+package mxr.utils.ttl;
+
+import java.util.concurrent.Callable;
+
+/**
+ * 基于普通ThreadLocal的上下文载体
+ * <p>
+ * 不注册到TTL，也不经过TTL的持有者Map，每次绑定只有一次ThreadLocal写入
+ * </p>
+ */
+final class ThreadLocalContextCarrier implements ContextCarrier {
+
+    private final ThreadLocal<BaseContext<Object>> bound = new ThreadLocal<>();
+
+    @Override
+    public BaseContext<Object> current() {
+        return bound.get();
+    }
+
+    @Override
+    public void run(BaseContext<Object> context, Runnable task) {
+        BaseContext<Object> previous = bound.get();
+        bound.set(context);
+        try {
+            task.run();
+        } finally {
+            restore(previous);
+        }
+    }
+
+    @Override
+    public <V> V call(BaseContext<Object> context, Callable<V> task) throws Exception {
+        BaseContext<Object> previous = bound.get();
+        bound.set(context);
+        try {
+            return task.call();
+        } finally {
+            restore(previous);
+        }
+    }
+
+    private void restore(BaseContext<Object> previous) {
+        if (previous == null) {
+            bound.remove();
+        } else {
+            bound.set(previous);
+        }
+    }
+}
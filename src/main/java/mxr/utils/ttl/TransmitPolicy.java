@@ -0,0 +1,162 @@
+package mxr.utils.ttl;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongFunction;
+import java.util.function.UnaryOperator;
+
+/**
+ * 上下文属性向子任务传递的策略
+ * <p>
+ * 在声明{@link ContextKey}时指定，提交任务时（捕获快照时）在提交线程上执行：
+ * </p>
+ * <ul>
+ *     <li>{@link #byReference()}：按引用传递，默认策略</li>
+ *     <li>{@link #localOnly()}：只在请求线程可见，不传递给子任务，适合缓冲区、数据库连接等线程封闭的对象</li>
+ *     <li>{@link #copying(UnaryOperator)}：传递副本，子任务的修改不会影响请求线程持有的对象</li>
+ *     <li>{@link #sizeCapped(ToLongFunction, long)}：估算大小超过上限时不传递并打印警告，避免排队的任务持有大对象</li>
+ * </ul>
+ * <pre>
+ *     public static final ContextKey&lt;byte[]&gt; BUFFER = ContextKey.of("buffer", byte[].class, TransmitPolicy.localOnly());
+ * </pre>
+ * <p>
+ * 策略只对默认的{@link CopyOnWriteContextImpl}生效；通过setContext设置的其他实现仍按引用整体传递
+ * </p>
+ * @param <T> 值类型
+ */
+@Slf4j
+public final class TransmitPolicy<T> {
+
+    /** 同一策略两次警告的最小间隔 */
+    private static final long WARN_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    @SuppressWarnings("rawtypes")
+    private static final TransmitPolicy BY_REFERENCE = new TransmitPolicy<>(Mode.REFERENCE, null, null, 0L);
+
+    @SuppressWarnings("rawtypes")
+    private static final TransmitPolicy LOCAL_ONLY = new TransmitPolicy<>(Mode.LOCAL_ONLY, null, null, 0L);
+
+    private enum Mode {
+        REFERENCE, LOCAL_ONLY, COPY, SIZE_CAPPED
+    }
+
+    private final Mode mode;
+
+    private final UnaryOperator<T> copier;
+
+    private final ToLongFunction<? super T> sizer;
+
+    private final long maxSize;
+
+    /** 上次打印超限警告的时间，0表示尚未打印 */
+    private final AtomicLong lastWarnNanos = new AtomicLong();
+
+    private TransmitPolicy(Mode mode, UnaryOperator<T> copier, ToLongFunction<? super T> sizer, long maxSize) {
+        this.mode = mode;
+        this.copier = copier;
+        this.sizer = sizer;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * 按引用传递
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> TransmitPolicy<T> byReference() {
+        return BY_REFERENCE;
+    }
+
+    /**
+     * 只在请求线程可见，子任务读取到null
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> TransmitPolicy<T> localOnly() {
+        return LOCAL_ONLY;
+    }
+
+    /**
+     * 传递副本
+     * @param copier 在提交线程上执行，返回null时不传递
+     */
+    public static <T> TransmitPolicy<T> copying(UnaryOperator<T> copier) {
+        if (copier == null) {
+            throw new NullPointerException("copier不能为空");
+        }
+        return new TransmitPolicy<>(Mode.COPY, copier, null, 0L);
+    }
+
+    /**
+     * 大小不超过上限时按引用传递，超过时不传递并打印警告（每分钟至多一次）
+     * @param sizer 估算值的大小，单位由调用方决定（例如字节数、元素个数）
+     * @param maxSize 上限
+     */
+    public static <T> TransmitPolicy<T> sizeCapped(ToLongFunction<? super T> sizer, long maxSize) {
+        if (sizer == null) {
+            throw new NullPointerException("sizer不能为空");
+        }
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("maxSize不能小于0");
+        }
+        return new TransmitPolicy<>(Mode.SIZE_CAPPED, null, sizer, maxSize);
+    }
+
+    /**
+     * 是否按引用传递，按引用传递的key在捕获快照时不需要任何处理
+     */
+    boolean isByReference() {
+        return mode == Mode.REFERENCE;
+    }
+
+    /**
+     * 生成传递给子任务的值
+     * <p>
+     * 尚未计算的延迟值不在提交线程上触发计算：复制策略改为子任务首次读取时复制，大小上限不做检查
+     * </p>
+     * @param key 属性对应的key
+     * @param value 请求线程持有的值，不为null
+     * @return 传递给子任务的值，null表示不传递
+     */
+    @SuppressWarnings("unchecked")
+    Object transmit(ContextKey<?> key, Object value) {
+        switch (mode) {
+            case LOCAL_ONLY:
+                return null;
+            case COPY:
+                if (LazyValue.isPending(value)) {
+                    LazyValue<T> lazy = (LazyValue<T>) value;
+                    return new LazyValue<>(() -> copier.apply(lazy.get()));
+                }
+                return copier.apply((T) LazyValue.resolve(value));
+            case SIZE_CAPPED:
+                if (LazyValue.isPending(value)) {
+                    return value;
+                }
+                long size = sizer.applyAsLong((T) LazyValue.resolve(value));
+                if (size <= maxSize) {
+                    return value;
+                }
+                warnOversized(key, size);
+                return null;
+            default:
+                return value;
+        }
+    }
+
+    private void warnOversized(ContextKey<?> key, long size) {
+        long now = System.nanoTime();
+        long last = lastWarnNanos.get();
+        if (last != 0L && now - last < WARN_INTERVAL_NANOS) {
+            return;
+        }
+        if (lastWarnNanos.compareAndSet(last, now)) {
+            log.warn("上下文属性 {} 的大小 {} 超过上限 {}，未传递给子任务", key.getName(), size, maxSize);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "TransmitPolicy(" + mode + ")";
+    }
+}
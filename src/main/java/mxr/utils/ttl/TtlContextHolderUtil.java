@@ -2,12 +2,16 @@ package mxr.utils.ttl;
 
 
 import com.alibaba.ttl.TransmittableThreadLocal;
+import com.alibaba.ttl.TransmittableThreadLocal.Transmitter;
 import com.alibaba.ttl.threadpool.TtlExecutors;
+import com.alibaba.ttl.threadpool.agent.TtlAgent;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.Arrays;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.function.Predicate;
 
 /**
  * 基于TransmittableThreadLocal的线程上下文管理工具类
@@ -23,19 +27,53 @@ public class TtlContextHolderUtil {
      * 保存请求线程ID的ThreadLocal
      */
     private static final ThreadLocal<Long> REQUEST_THREAD_ID = new ThreadLocal<>();
+
+    /**
+     * 已注册的可信线程匹配器，注册时整体替换数组，读取无锁
+     */
+    @SuppressWarnings("unchecked")
+    private static volatile Predicate<Thread>[] trustedThreadMatchers = new Predicate[0];
     
     /**
      * 线程上下文容器，使用TransmittableThreadLocal实现跨线程池的值传递
      * <p>
-     * 初始化为空值的BaseContextImpl对象，避免空指针异常
+     * 不提供initialValue，TTL.get()只查看当前绑定、未绑定时返回null且不登记到TTL的持有者；
+     * 需要上下文的入口通过{@link #boundContext()}在首次访问时创建空的CopyOnWriteContextImpl，避免空指针异常。
+     * 向子线程传递时通过copy()交给子线程当前快照根，子线程与父线程互不共享可变状态
      * </p>
      */
     private static final TransmittableThreadLocal<BaseContext<Object>> TTL = new TransmittableThreadLocal<>() {
         @Override
-        protected BaseContext<Object> initialValue() {
-            return new BaseContextImpl<>();
+        public BaseContext<Object> copy(BaseContext<Object> parentValue) {
+            return snapshotOf(parentValue);
+        }
+
+        @Override
+        protected BaseContext<Object> childValue(BaseContext<Object> parentValue) {
+            return snapshotOf(parentValue);
         }
     };
+
+    /**
+     * 上下文泄漏检测器，未启用时为null
+     */
+    private static volatile ContextLeakDetector leakDetector;
+
+    /**
+     * 是否已启用Agent模式，启用后任意线程池的线程均可获取上下文
+     */
+    private static volatile boolean agentMode;
+
+    /**
+     * 请求作用域进入前当前线程没有需要恢复的上下文
+     */
+    private static final Object REQUEST_SCOPE_NO_PREVIOUS = new Object();
+
+    /**
+     * 虚拟线程模式的上下文载体，Java 21开启预览特性时基于ScopedValue，否则基于普通ThreadLocal
+     */
+    private static final ContextCarrier CARRIER = ContextCarrier.load();
+
     /**
      * 私有构造方法，防止工具类被实例化
      * @throws UnsupportedOperationException 当尝试反射创建实例时抛出
@@ -77,17 +115,27 @@ public class TtlContextHolderUtil {
      * @param context 新的上下文对象，需继承自BaseContext
      */
     public static void setContext(BaseContext<Object> context) {
-        if (context != null) TTL.set(context);
+        if (context != null) {
+            TTL.set(context);
+            ContextLeakDetector detector = leakDetector;
+            if (detector != null) {
+                detector.bound(context);
+            }
+        }
     }
 
     /**
      * 清除当前线程的上下文数据
      * <p>
-     * 调用后该线程后续获取的上下文将返回initialValue()初始化的对象
+     * 调用后该线程后续获取的上下文为新建的空上下文
      * </p>
      */
     public static void clearContext() {
         TTL.remove();
+        ContextLeakDetector detector = leakDetector;
+        if (detector != null) {
+            detector.released();
+        }
     }
 
 
@@ -101,17 +149,25 @@ public class TtlContextHolderUtil {
      * @throws UnsupportedOperationException 当线程不是主线程且不是由getSharedTtlExecutor()创建的线程池时抛出
      */
     public static BaseContext<Object> getContext() {
-        // 如果是请求线程，直接返回上下文
-        if (isRequestThread()) {
-            return TTL.get();
+        Thread currentThread = Thread.currentThread();
+
+        // TTL线程池的线程或请求线程，直接返回上下文
+        if (currentThread instanceof TtlTrustedThread || isRequestThread()) {
+            return boundContext();
         }
-        
-        // 检查当前线程是否来自共享TTL线程池
-        if (!isThreadFromTtlExecutor()) {
+
+        // 虚拟线程执行器通过载体绑定上下文，不经过TTL
+        BaseContext<Object> carried = CARRIER.current();
+        if (carried != null) {
+            return carried;
+        }
+
+        // 检查当前线程是否来自其他已注册的可信线程池；Agent模式下所有线程池均已增强
+        if (!agentMode && !matchesTrustedThread(currentThread)) {
             throw new UnsupportedOperationException("当前线程不是由TTLExecutorFactory类创建的线程池提交的任务，无法获取上下文。请使用TTLExecutorFactory创建的线程池提交任务。");
         }
         
-        return TTL.get();
+        return boundContext();
     }
 
     /**
@@ -126,45 +182,347 @@ public class TtlContextHolderUtil {
     public static BaseContext<Object> getContext(ExecutorService executorService) {
         // 如果是请求线程，直接返回上下文
         if (isRequestThread()) {
-            return TTL.get();
+            return boundContext();
         }
         
-        // 检查线程池是否为TTL包装的线程池
-        if (executorService != null && !TtlExecutors.isTtlWrapper(executorService)) {
+        // 检查线程池是否为TTL包装的线程池；Agent模式下TtlExecutors不再包装，线程池由Agent增强
+        if (!agentMode && executorService != null && !TtlExecutors.isTtlWrapper(executorService)) {
             throw new UnsupportedOperationException("线程池必须是TTL包装的线程池，请使用TTLExecutorFactory.getTtlExecutorService()方法包装线程池");
         }
 
+        // 虚拟线程执行器通过载体绑定上下文
+        BaseContext<Object> carried = CARRIER.current();
+        if (carried != null) {
+            return carried;
+        }
+
         // 检查当前线程是否来自TTLExecutorFactory创建的线程池
-        if (!isThreadFromTtlExecutor()) {
+        if (!agentMode && !isThreadFromTtlExecutor()) {
             throw new UnsupportedOperationException("当前线程不是由TTLExecutorFactory类创建的线程池提交的任务，无法获取上下文。请使用TTLExecutorFactory创建的线程池提交任务。");
         }
         
-        return TTL.get();
+        return boundContext();
+    }
+
+    /**
+     * 创建结构化并发作用域，任一子任务失败时取消其余子任务
+     * @param executor 执行子任务的TTL线程池
+     * @see ContextScope
+     */
+    public static ContextScope scope(ExecutorService executor) {
+        return new ContextScope(executor, ContextScope.JoinPolicy.FAIL_FAST);
+    }
+
+    /**
+     * 创建结构化并发作用域
+     * @param executor 执行子任务的TTL线程池
+     * @param policy 子任务的等待策略
+     * @see ContextScope
+     */
+    public static ContextScope scope(ExecutorService executor, ContextScope.JoinPolicy policy) {
+        return new ContextScope(executor, policy);
+    }
+
+    /**
+     * 把子任务的本地变更合并到派生它的父上下文
+     * <p>
+     * 子任务中通过getContext()写入的属性只对子任务可见，需要发布给请求线程时，
+     * 由子任务返回自身的上下文，请求线程在任务结束后调用本方法：
+     * </p>
+     * <pre>
+     *     Future&lt;BaseContext&lt;Object&gt;&gt; future = executor.submit(() -&gt; {
+     *         TtlContextHolderUtil.getContext().addProperty("result", "done");
+     *         return TtlContextHolderUtil.getContext();
+     *     });
+     *     TtlContextHolderUtil.mergeBack(future.get());
+     * </pre>
+     * @param child 子任务的上下文；不是子上下文（例如通过setContext设置的共享实现）时不做任何操作
+     * @see CopyOnWriteContextImpl#mergeBack()
+     */
+    public static void mergeBack(BaseContext<Object> child) {
+        if (child instanceof CopyOnWriteContextImpl) {
+            ((CopyOnWriteContextImpl<Object>) child).mergeBack();
+        }
+    }
+
+
+    /**
+     * 生成传递给子线程的上下文
+     * <p>
+     * CopyOnWriteContextImpl只拷贝快照根引用；通过setContext设置的其他实现保持原有的引用传递行为
+     * </p>
+     */
+    private static BaseContext<Object> snapshotOf(BaseContext<Object> parentValue) {
+        if (parentValue instanceof CopyOnWriteContextImpl) {
+            return ((CopyOnWriteContextImpl<Object>) parentValue).snapshot();
+        }
+        return parentValue;
     }
 
+    /**
+     * 注册可信线程匹配器
+     * <p>
+     * 用于接入无法使用{@link TtlThreadFactory}的可信线程池（例如第三方框架管理的线程池），
+     * 匹配器只在当前线程既不是{@link TtlTrustedThread}也不是请求线程时才会被调用
+     * </p>
+     * @param matcher 线程匹配器，返回true表示该线程可以获取上下文
+     */
+    public static synchronized void registerTrustedThreadMatcher(Predicate<Thread> matcher) {
+        if (matcher == null) {
+            throw new IllegalArgumentException("可信线程匹配器不能为空");
+        }
+        Predicate<Thread>[] current = trustedThreadMatchers;
+        Predicate<Thread>[] next = Arrays.copyOf(current, current.length + 1);
+        next[current.length] = matcher;
+        trustedThreadMatchers = next;
+    }
+
+    /**
+     * 移除已注册的可信线程匹配器
+     * @param matcher 注册时传入的匹配器实例
+     */
+    public static synchronized void unregisterTrustedThreadMatcher(Predicate<Thread> matcher) {
+        Predicate<Thread>[] current = trustedThreadMatchers;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == matcher) {
+                Predicate<Thread>[] next = Arrays.copyOf(current, current.length - 1);
+                System.arraycopy(current, i + 1, next, i, current.length - i - 1);
+                trustedThreadMatchers = next;
+                return;
+            }
+        }
+    }
+
+    /**
+     * 是否通过 -javaagent 加载了TTL Agent
+     */
+    public static boolean isAgentLoaded() {
+        return TtlAgent.isTtlAgentLoaded();
+    }
+
+    /**
+     * 启用Agent模式
+     * <p>
+     * TTL Agent增强了JDK的ThreadPoolExecutor、ScheduledThreadPoolExecutor、ForkJoinTask与TimerTask，
+     * 第三方库自行创建的线程池（包括ForkJoinPool.commonPool）提交任务时同样会捕获与回放上下文。
+     * 启用后getContext不再要求线程来自TTLExecutorFactory或已注册的可信线程池，也不再要求线程池经过TTL包装；
+     * 未携带上下文的线程得到空的初始上下文。启动参数示例：
+     * </p>
+     * <pre>
+     *     -javaagent:path/to/transmittable-thread-local-2.14.5.jar
+     * </pre>
+     * @throws IllegalStateException 未加载TTL Agent时抛出
+     */
+    public static void enableAgentMode() {
+        if (!isAgentLoaded()) {
+            throw new IllegalStateException("未通过-javaagent加载TTL Agent，无法启用Agent模式");
+        }
+        agentMode = true;
+    }
+
+    /**
+     * 停用Agent模式，恢复可信线程池校验
+     */
+    public static void disableAgentMode() {
+        agentMode = false;
+    }
+
+    /**
+     * 是否已启用Agent模式
+     */
+    public static boolean isAgentMode() {
+        return agentMode;
+    }
 
     /**
-     * 检查当前线程是否来自共享TTL线程池
+     * 检查当前线程是否可以获取上下文
      * <p>
-     * 通过检查线程名称判断是否由getSharedTtlExecutor()创建的线程池提交的任务
+     * 依次判断：TtlThreadFactory创建的可信线程（instanceof检查）、请求线程、已注册的可信线程匹配器
      * </p>
-     * @return 如果是共享TTL线程池创建的线程返回true，否则返回false
+     * @return 如果是请求线程或可信线程返回true，否则返回false
      */
     private static boolean isThreadFromTtlExecutor() {
         Thread currentThread = Thread.currentThread();
-        
+
+        // TtlThreadFactory创建的线程带有可信线程标记
+        if (currentThread instanceof TtlTrustedThread) {
+            return true;
+        }
+
         // 如果是请求线程，直接返回true
         if (isRequestThread()) {
             return true;
         }
-        
-        // 获取当前线程的名称信息
-        String threadName = currentThread.getName();
-        
-        // 检查线程是否属于共享TTL线程池
-        // 直接检查线程名称是否包含共享TTL线程池的标识前缀
-        // 由于在TTLExecutorFactory中，我们为共享线程池的线程设置了特殊的名称前缀
-        return threadName.startsWith(TTLExecutorFactory.TTL_EXECUTOR_IDENTIFIER);
+
+        // 其他已注册的可信线程池
+        return matchesTrustedThread(currentThread);
+    }
+
+    private static boolean matchesTrustedThread(Thread thread) {
+        for (Predicate<Thread> matcher : trustedThreadMatchers) {
+            if (matcher.test(thread)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 启用或停用上下文泄漏检测器，由{@link ContextLeakDetector}在启动与关闭时调用
+     */
+    static void setLeakDetector(ContextLeakDetector detector) {
+        leakDetector = detector;
+    }
+
+    /**
+     * 进入请求作用域：把上下文绑定到当前线程并标记为请求线程，供反应式链路在任意线程上延续同一个请求
+     * <p>
+     * 当前线程已是请求线程时（嵌套进入，或在Servlet请求线程上阻塞等待反应式结果）沿用外层上下文，不做任何修改
+     * </p>
+     * @return 退出时交给{@link #exitRequestScope(Object)}的恢复信息
+     */
+    static Object enterRequestScope(BaseContext<Object> context) {
+        if (isRequestThread()) {
+            return null;
+        }
+        // 只查看当前绑定，不为没有上下文的线程创建空上下文，也不通知泄漏检测器
+        BaseContext<Object> previous = TTL.get();
+        TTL.set(context);
+        markAsRequestThread();
+        return previous != null ? previous : REQUEST_SCOPE_NO_PREVIOUS;
+    }
+
+    /**
+     * 退出请求作用域，恢复进入前的上下文
+     * @param scope {@link #enterRequestScope(BaseContext)}的返回值
+     */
+    @SuppressWarnings("unchecked")
+    static void exitRequestScope(Object scope) {
+        if (scope == null) {
+            return;
+        }
+        clearRequestThreadMark();
+        if (scope == REQUEST_SCOPE_NO_PREVIOUS) {
+            TTL.remove();
+        } else {
+            TTL.set((BaseContext<Object>) scope);
+        }
+    }
+
+    /**
+     * 清空当前线程的全部TTL值后绑定指定上下文，不捕获也不回放提交线程的其他TTL值
+     * <p>
+     * 供周期任务的冻结策略使用，结束后由{@link Transmitter#restore(Object)}恢复
+     * </p>
+     * @return 交给Transmitter.restore的备份
+     */
+    static Object bindDetached(BaseContext<Object> context) {
+        Object backup = Transmitter.clear();
+        TTL.set(context);
+        return backup;
+    }
+
+    /**
+     * 当前线程可见的上下文，不可获取时返回null且不抛出异常
+     * <p>
+     * 供调度钩子等在任意线程上调用的场景使用，只查看当前绑定，不为尚未绑定上下文的线程创建空上下文；
+     * Agent模式下所有线程均视为可信
+     * </p>
+     */
+    static BaseContext<Object> currentContextOrNull() {
+        Thread currentThread = Thread.currentThread();
+        if (currentThread instanceof TtlTrustedThread || isRequestThread() || matchesTrustedThread(currentThread)) {
+            return TTL.get();
+        }
+        BaseContext<Object> carried = CARRIER.current();
+        return carried != null || !agentMode ? carried : TTL.get();
+    }
+
+    /**
+     * 生成传递给子任务的上下文快照
+     */
+    static BaseContext<Object> snapshot(BaseContext<Object> context) {
+        return snapshotOf(context);
+    }
+
+    /**
+     * 为共享同一份捕获结果的批内任务派生各自的子上下文
+     * <p>
+     * 通过setContext设置的其他实现保持原有的引用传递行为
+     * </p>
+     * @see CopyOnWriteContextImpl#fork()
+     */
+    static BaseContext<Object> fork(BaseContext<Object> captured) {
+        if (captured instanceof CopyOnWriteContextImpl) {
+            return ((CopyOnWriteContextImpl<Object>) captured).fork();
+        }
+        return captured;
+    }
+
+    /**
+     * 把当前线程回放得到的上下文换成同一快照派生的新子上下文，由回放前的备份负责恢复
+     */
+    static void forkReplayed() {
+        BaseContext<Object> replayed = TTL.get();
+        if (replayed != null) {
+            TTL.set(fork(replayed));
+        }
+    }
+
+    /**
+     * 虚拟线程模式使用的上下文载体
+     */
+    static ContextCarrier carrier() {
+        return CARRIER;
+    }
+
+    /**
+     * 捕获当前上下文的快照，供虚拟线程执行器交给载体
+     * <p>
+     * 在虚拟线程中再次提交任务时优先使用载体中的上下文
+     * </p>
+     */
+    static BaseContext<Object> captureForCarrier() {
+        BaseContext<Object> carried = CARRIER.current();
+        return snapshotOf(carried != null ? carried : boundContext());
+    }
+
+    /**
+     * 捕获当前线程的TTL值，供TTL线程池的任务、并行流拆分回放
+     * <p>
+     * 虚拟线程执行器的任务通过载体读取上下文，TTL中没有绑定；在这类任务中再向TTL线程池提交任务、
+     * 通过ContextScope派生子任务或使用并行流时，捕获期间把载体中的上下文临时绑定到TTL，
+     * 子任务回放的是它的快照，捕获结束后恢复原绑定
+     * </p>
+     */
+    static Object capture() {
+        BaseContext<Object> carried = CARRIER.current();
+        if (carried == null) {
+            return Transmitter.capture();
+        }
+        BaseContext<Object> previous = TTL.get();
+        TTL.set(carried);
+        try {
+            return Transmitter.capture();
+        } finally {
+            if (previous == null) {
+                TTL.remove();
+            } else {
+                TTL.set(previous);
+            }
+        }
+    }
+
+    /**
+     * 当前线程绑定的上下文，尚未绑定时创建空上下文并通知泄漏检测器
+     */
+    private static BaseContext<Object> boundContext() {
+        BaseContext<Object> context = TTL.get();
+        if (context == null) {
+            context = new CopyOnWriteContextImpl<>();
+            setContext(context);
+        }
+        return context;
     }
     
     public static void main(String[] args) throws ExecutionException, InterruptedException {
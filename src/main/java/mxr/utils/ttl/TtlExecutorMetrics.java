@@ -0,0 +1,175 @@
+package mxr.utils.ttl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.search.Search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TTL线程池的Micrometer指标
+ * <p>
+ * 默认注册到{@link Metrics#globalRegistry}，Spring Boot Actuator会把自动配置的MeterRegistry加入全局注册表，
+ * 因此不依赖Spring也能通过 /actuator/metrics 查看。所有指标均带有 name 标签（线程池名称）：
+ * </p>
+ * <ul>
+ *     <li>ttl.executor.active / ttl.executor.pool.size / ttl.executor.queued：活跃线程数、线程数、队列深度</li>
+ *     <li>ttl.executor.completed / ttl.executor.rejected：完成与拒绝的任务数</li>
+ *     <li>ttl.executor.expired：在队列中超过请求截止时间而被丢弃的任务数</li>
+ *     <li>ttl.executor.queue.wait / ttl.executor.execution：排队与执行耗时</li>
+ *     <li>ttl.executor.context（phase=capture/replay/restore）：上下文捕获、回放、恢复耗时</li>
+ *     <li>ttl.scheduler.lateness / ttl.scheduler.drift：调度线程池中周期任务每次执行的延迟与相邻两次延迟之差，仅调度线程池注册</li>
+ * </ul>
+ * <p>
+ * 耗时不在每个任务上记录Micrometer Timer，而是由{@link TaskLatencyRecorder}的直方图记录，采集指标时读取：
+ * 每项耗时注册一个FunctionTimer（次数与总耗时），以及 {名称}.percentile（phi=0.5/0.99）与 {名称}.max 两个TimeGauge
+ * </p>
+ * <p>
+ * 指标按线程池名称标识，同名线程池重新创建时（例如共享线程池被配置创建的实例替换）新实例接管该名称下的指标，
+ * 与{@link TaskLatencyRecorder}一致；旧实例关闭时只移除仍归自己所有的指标，不影响新实例
+ * </p>
+ */
+public final class TtlExecutorMetrics implements TtlTaskListener {
+
+    private static final String PREFIX = "ttl.executor";
+
+    private static final double[] PERCENTILES = {50.0, 99.0};
+
+    private final MeterRegistry registry;
+
+    private final List<Meter> meters = new ArrayList<>();
+
+    private final Counter rejected;
+
+    private final Counter expired;
+
+    private TtlExecutorMetrics(MeterRegistry registry, String poolName, ThreadPoolExecutor executor,
+                               TaskLatencyRecorder recorder) {
+        this.registry = registry;
+        Tags tags = Tags.of("name", poolName);
+        // 同名的旧实例仍注册着指标时，register会返回旧实例的指标（Gauge仍绑定旧线程池），先移除再注册
+        evict(registry, poolName);
+        meters.add(Gauge.builder(PREFIX + ".active", executor, ThreadPoolExecutor::getActiveCount)
+                .tags(tags).description("正在执行任务的线程数").register(registry));
+        meters.add(Gauge.builder(PREFIX + ".pool.size", executor, ThreadPoolExecutor::getPoolSize)
+                .tags(tags).description("当前线程数").register(registry));
+        meters.add(Gauge.builder(PREFIX + ".queued", executor, e -> e.getQueue().size())
+                .tags(tags).description("队列中等待执行的任务数").register(registry));
+        meters.add(FunctionCounter.builder(PREFIX + ".completed", executor, ThreadPoolExecutor::getCompletedTaskCount)
+                .tags(tags).description("已完成的任务数").register(registry));
+        this.rejected = register(Counter.builder(PREFIX + ".rejected")
+                .tags(tags).description("被拒绝的任务数").register(registry));
+        this.expired = register(Counter.builder(PREFIX + ".expired")
+                .tags(tags).description("在队列中超过请求截止时间而被丢弃的任务数").register(registry));
+        publish(PREFIX + ".queue.wait", tags, "任务排队耗时", recorder.getQueueWait());
+        publish(PREFIX + ".execution", tags, "任务执行耗时", recorder.getExecution());
+        publish(PREFIX + ".context", tags.and("phase", "capture"), "上下文捕获耗时", recorder.getCapture());
+        publish(PREFIX + ".context", tags.and("phase", "replay"), "上下文回放耗时", recorder.getReplay());
+        publish(PREFIX + ".context", tags.and("phase", "restore"), "上下文恢复耗时", recorder.getRestore());
+        if (executor instanceof ScheduledThreadPoolExecutor) {
+            publish("ttl.scheduler.lateness", tags, "周期任务相对预期开始时间的延迟", recorder.getLateness());
+            publish("ttl.scheduler.drift", tags, "周期任务相邻两次执行的延迟之差", recorder.getDrift());
+        }
+    }
+
+    /**
+     * 为线程池注册指标，注册到全局MeterRegistry
+     * @param poolName 线程池名称
+     * @param executor 被包装的原始线程池
+     * @param recorder 线程池的任务耗时直方图，耗时指标从中读取
+     * @return 统计拒绝与过期任务的监听器，线程池关闭时移除已注册的指标
+     */
+    public static TtlExecutorMetrics bind(String poolName, ThreadPoolExecutor executor, TaskLatencyRecorder recorder) {
+        return bind(Metrics.globalRegistry, poolName, executor, recorder);
+    }
+
+    /**
+     * 为线程池注册指标
+     * @param registry 指标注册表
+     * @param poolName 线程池名称
+     * @param executor 被包装的原始线程池
+     * @param recorder 线程池的任务耗时直方图，耗时指标从中读取
+     * @return 统计拒绝与过期任务的监听器，线程池关闭时移除已注册的指标
+     */
+    public static TtlExecutorMetrics bind(MeterRegistry registry, String poolName, ThreadPoolExecutor executor,
+                                          TaskLatencyRecorder recorder) {
+        synchronized (TtlExecutorMetrics.class) {
+            return new TtlExecutorMetrics(registry, poolName, executor, recorder);
+        }
+    }
+
+    /**
+     * 移除线程池名称下已注册的全部线程池指标
+     */
+    private static void evict(MeterRegistry registry, String poolName) {
+        for (Meter meter : Search.in(registry).tag("name", poolName).meters()) {
+            String name = meter.getId().getName();
+            if (name.startsWith(PREFIX + ".") || name.startsWith("ttl.scheduler.")) {
+                registry.remove(meter);
+            }
+        }
+    }
+
+    /**
+     * 指标仍归该实例所有时才移除，已被同名的新线程池接管的指标保持不变
+     */
+    static void removeOwned(MeterRegistry registry, Meter meter) {
+        synchronized (TtlExecutorMetrics.class) {
+            Meter.Id id = meter.getId();
+            // 按实例而不是按标识比较，Meter的equals只比较标识
+            if (Search.in(registry).name(id.getName()).tags(id.getTagsAsIterable()).meters().stream()
+                    .anyMatch(current -> current == meter)) {
+                registry.remove(meter);
+            }
+        }
+    }
+
+    /**
+     * 以FunctionTimer发布直方图的累计次数与总耗时，以TimeGauge发布百分位数与最大值
+     */
+    private void publish(String name, Tags tags, String description, LatencyHistogram histogram) {
+        register(FunctionTimer.builder(name, histogram, LatencyHistogram::totalCount,
+                        LatencyHistogram::totalNanos, TimeUnit.NANOSECONDS)
+                .tags(tags).description(description).register(registry));
+        for (double percentile : PERCENTILES) {
+            register(TimeGauge.builder(name + ".percentile", histogram, TimeUnit.NANOSECONDS,
+                            h -> h.snapshot().getValueAtPercentile(percentile))
+                    .tags(tags.and("phi", String.valueOf(percentile / 100.0)))
+                    .description(description + "的百分位数").register(registry));
+        }
+        register(TimeGauge.builder(name + ".max", histogram, TimeUnit.NANOSECONDS, h -> h.snapshot().getMax())
+                .tags(tags).description(description + "的最大值").register(registry));
+    }
+
+    private <M extends Meter> M register(M meter) {
+        meters.add(meter);
+        return meter;
+    }
+
+    @Override
+    public void onExpired() {
+        expired.increment();
+    }
+
+    @Override
+    public void onRejected() {
+        rejected.increment();
+    }
+
+    @Override
+    public synchronized void onShutdown() {
+        meters.forEach(meter -> removeOwned(registry, meter));
+        meters.clear();
+    }
+}
@@ -0,0 +1,215 @@
+package mxr.utils.ttl;
+
+import com.alibaba.ttl.TtlUnwrap;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 命名线程池注册表
+ * <p>
+ * 按名称登记线程池，{@link #getOrCreate(String, Function)}在同名线程池不存在或已关闭时才创建，
+ * 重复调用拿到同一个实例，线程数不随调用次数增长。登记的线程池通过{@link #shutdownAll(long, TimeUnit)}按顺序优雅关闭：
+ * order小的先关闭，同一order的线程池一起停止接收任务并在剩余的排空时间内等待已提交的任务执行完，
+ * 超时后中断仍在执行的任务并丢弃队列中的任务。Spring环境下由TtlExecutorLifecycle在容器关闭时调用。
+ * </p>
+ * <p>
+ * 向其他线程池提交任务的线程池（例如调度线程池）应使用更小的order，先于被提交的线程池关闭；
+ * 共享TTL线程池使用{@link #SHARED_ORDER}，最后关闭。注册表的线程总数以 ttl.executor.registry.threads 指标报告
+ * </p>
+ */
+@Slf4j
+public final class TtlExecutorRegistry {
+
+    /** 默认的关闭顺序 */
+    public static final int DEFAULT_ORDER = 0;
+
+    /** 共享TTL线程池的关闭顺序，最后关闭 */
+    public static final int SHARED_ORDER = Integer.MAX_VALUE;
+
+    private static final Map<String, Entry> ENTRIES = new LinkedHashMap<>();
+
+    static {
+        Gauge.builder("ttl.executor.registry.threads", TtlExecutorRegistry::totalThreads)
+                .description("注册表中所有线程池的线程总数")
+                .register(Metrics.globalRegistry);
+    }
+
+    private TtlExecutorRegistry() {
+        throw new UnsupportedOperationException("TtlExecutorRegistry类禁止实例化");
+    }
+
+    /**
+     * 获取或创建命名线程池，使用默认的关闭顺序
+     * @see #getOrCreate(String, int, Function)
+     */
+    public static <E extends ExecutorService> E getOrCreate(String name, Function<String, E> factory) {
+        return getOrCreate(name, DEFAULT_ORDER, factory);
+    }
+
+    /**
+     * 获取或创建命名线程池
+     * <p>
+     * 同名线程池已登记且未关闭时直接返回，不调用factory；已关闭时重新创建并替换
+     * </p>
+     * @param name 线程池名称
+     * @param order 关闭顺序，小的先关闭
+     * @param factory 以名称为参数创建线程池
+     * @return 登记的线程池
+     * @throws ClassCastException 同名线程池的类型与本次期望的类型不一致时，在调用方赋值处抛出
+     */
+    @SuppressWarnings("unchecked")
+    public static synchronized <E extends ExecutorService> E getOrCreate(String name, int order,
+                                                                         Function<String, E> factory) {
+        Entry entry = ENTRIES.get(name);
+        if (entry != null && !entry.executor.isShutdown()) {
+            return (E) entry.executor;
+        }
+        E executor = factory.apply(name);
+        if (executor == null) {
+            throw new IllegalArgumentException("线程池 [" + name + "] 的创建结果不能为空");
+        }
+        ENTRIES.put(name, new Entry(name, order, executor));
+        return executor;
+    }
+
+    /**
+     * 登记已创建的线程池，同名线程池已登记时替换（不关闭被替换的线程池）
+     * @param name 线程池名称
+     * @param order 关闭顺序，小的先关闭
+     * @param executor 线程池
+     */
+    public static synchronized void register(String name, int order, ExecutorService executor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("线程池不能为空");
+        }
+        ENTRIES.put(name, new Entry(name, order, executor));
+    }
+
+    /**
+     * 获取命名线程池
+     * @return 未登记时返回null
+     */
+    public static synchronized ExecutorService get(String name) {
+        Entry entry = ENTRIES.get(name);
+        return entry == null ? null : entry.executor;
+    }
+
+    /**
+     * 获取或创建命名的固定大小TTL线程池
+     */
+    public static ContextExecutorService fixed(String name, int size) {
+        return getOrCreate(name, n -> TTLExecutorFactory.newFixedThreadPool(n, size));
+    }
+
+    /**
+     * 获取或创建命名的缓存TTL线程池
+     */
+    public static ContextExecutorService cached(String name) {
+        return getOrCreate(name, TTLExecutorFactory::newCachedThreadPool);
+    }
+
+    /**
+     * 获取或创建命名的调度TTL线程池，先于默认顺序的线程池关闭
+     */
+    public static ContextScheduledExecutorService scheduled(String name, int size) {
+        return getOrCreate(name, DEFAULT_ORDER - 1, n -> TTLExecutorFactory.newScheduledThreadPool(n, size));
+    }
+
+    /**
+     * 各线程池的当前线程数，按登记顺序排列
+     * @return 无法获取线程数的线程池（例如虚拟线程执行器）为-1
+     */
+    public static synchronized Map<String, Integer> threadCounts() {
+        Map<String, Integer> result = new LinkedHashMap<>();
+        ENTRIES.forEach((name, entry) -> result.put(name, poolSize(entry.executor)));
+        return result;
+    }
+
+    private static synchronized double totalThreads() {
+        int total = 0;
+        for (Entry entry : ENTRIES.values()) {
+            total += Math.max(poolSize(entry.executor), 0);
+        }
+        return total;
+    }
+
+    private static int poolSize(ExecutorService executor) {
+        ExecutorService raw = TtlUnwrap.unwrap(executor);
+        if (raw instanceof ThreadPoolExecutor) {
+            return ((ThreadPoolExecutor) raw).getPoolSize();
+        }
+        if (raw instanceof ForkJoinPool) {
+            return ((ForkJoinPool) raw).getPoolSize();
+        }
+        return -1;
+    }
+
+    /**
+     * 按顺序优雅关闭所有登记的线程池并清空注册表
+     * @param drainTimeout 所有线程池合计的排空时间
+     * @param unit 时间单位
+     * @return 所有任务在排空时间内执行完时返回true
+     */
+    public static boolean shutdownAll(long drainTimeout, TimeUnit unit) {
+        List<Entry> entries;
+        synchronized (TtlExecutorRegistry.class) {
+            entries = new ArrayList<>(ENTRIES.values());
+            ENTRIES.clear();
+        }
+        entries.sort(Comparator.comparingInt(e -> e.order));
+        long deadline = System.nanoTime() + unit.toNanos(drainTimeout);
+        boolean drained = true;
+        int from = 0;
+        while (from < entries.size()) {
+            int to = from;
+            while (to < entries.size() && entries.get(to).order == entries.get(from).order) {
+                entries.get(to++).executor.shutdown();
+            }
+            for (Entry entry : entries.subList(from, to)) {
+                drained &= awaitOrForce(entry, deadline);
+            }
+            from = to;
+        }
+        return drained;
+    }
+
+    private static boolean awaitOrForce(Entry entry, long deadline) {
+        try {
+            if (entry.executor.awaitTermination(Math.max(deadline - System.nanoTime(), 0L), TimeUnit.NANOSECONDS)) {
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        int dropped = entry.executor.shutdownNow().size();
+        log.warn("线程池 [{}] 未在排空时间内结束，已中断执行中的任务并丢弃 {} 个排队任务", entry.name, dropped);
+        return false;
+    }
+
+    private static final class Entry {
+
+        private final String name;
+
+        private final int order;
+
+        private final ExecutorService executor;
+
+        private Entry(String name, int order, ExecutorService executor) {
+            this.name = name;
+            this.order = order;
+            this.executor = executor;
+        }
+    }
+}
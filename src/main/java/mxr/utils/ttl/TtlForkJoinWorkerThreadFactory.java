@@ -0,0 +1,45 @@
+package mxr.utils.ttl;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * TTL ForkJoinPool工作线程工厂
+ * <p>
+ * 与{@link TtlThreadFactory}相同，创建实现了{@link TtlTrustedThread}的工作线程。
+ * ForkJoinPool按需在任意提交线程上创建工作线程，使用时需经过
+ * {@link com.alibaba.ttl.threadpool.TtlForkJoinPoolHelper#getDisableInheritableForkJoinWorkerThreadFactory}包装，
+ * 避免工作线程通过InheritableThreadLocal永久继承创建时所在请求的上下文
+ * </p>
+ */
+public class TtlForkJoinWorkerThreadFactory implements ForkJoinPool.ForkJoinWorkerThreadFactory {
+
+    private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+    private final String namePrefix;
+
+    /**
+     * @param namePrefix 线程名称前缀，后接线程序号
+     */
+    public TtlForkJoinWorkerThreadFactory(String namePrefix) {
+        this.namePrefix = namePrefix;
+    }
+
+    @Override
+    public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+        ForkJoinWorkerThread thread = new TtlForkJoinWorkerThread(pool);
+        thread.setName(namePrefix + threadNumber.getAndIncrement());
+        return thread;
+    }
+
+    /**
+     * TTL ForkJoinPool工作线程
+     */
+    static final class TtlForkJoinWorkerThread extends ForkJoinWorkerThread implements TtlTrustedThread {
+
+        TtlForkJoinWorkerThread(ForkJoinPool pool) {
+            super(pool);
+        }
+    }
+}
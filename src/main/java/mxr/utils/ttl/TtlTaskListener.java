@@ -0,0 +1,113 @@
+package mxr.utils.ttl;
+
+/**
+ * TTL任务生命周期监听器
+ * <p>
+ * 由{@link ContextExecutorService}在任务捕获、回放、执行、恢复各阶段回调，时间单位均为纳秒。
+ * 回调在提交线程或工作线程上同步执行，实现需保证线程安全且足够轻量，不应抛出异常
+ * </p>
+ */
+public interface TtlTaskListener {
+
+    /** 不做任何处理的监听器 */
+    TtlTaskListener NOOP = new TtlTaskListener() {
+    };
+
+    /**
+     * 组合两个监听器，按顺序回调
+     */
+    static TtlTaskListener compose(TtlTaskListener first, TtlTaskListener second) {
+        return new TtlTaskListener() {
+            @Override
+            public void onCaptured(long captureNanos) {
+                first.onCaptured(captureNanos);
+                second.onCaptured(captureNanos);
+            }
+
+            @Override
+            public void onStarted(long queueWaitNanos, long replayNanos) {
+                first.onStarted(queueWaitNanos, replayNanos);
+                second.onStarted(queueWaitNanos, replayNanos);
+            }
+
+            @Override
+            public void onPeriodicStarted(long latenessNanos, long driftNanos) {
+                first.onPeriodicStarted(latenessNanos, driftNanos);
+                second.onPeriodicStarted(latenessNanos, driftNanos);
+            }
+
+            @Override
+            public void onCompleted(long executionNanos, long restoreNanos) {
+                first.onCompleted(executionNanos, restoreNanos);
+                second.onCompleted(executionNanos, restoreNanos);
+            }
+
+            @Override
+            public void onExpired() {
+                first.onExpired();
+                second.onExpired();
+            }
+
+            @Override
+            public void onRejected() {
+                first.onRejected();
+                second.onRejected();
+            }
+
+            @Override
+            public void onShutdown() {
+                first.onShutdown();
+                second.onShutdown();
+            }
+        };
+    }
+
+    /**
+     * 提交任务时完成上下文捕获
+     * @param captureNanos 捕获耗时
+     */
+    default void onCaptured(long captureNanos) {
+    }
+
+    /**
+     * 任务开始执行，上下文已回放
+     * @param queueWaitNanos 任务从可执行到开始执行的排队耗时
+     * @param replayNanos 回放耗时
+     */
+    default void onStarted(long queueWaitNanos, long replayNanos) {
+    }
+
+    /**
+     * 周期任务的一次执行开始，在{@link #onStarted(long, long)}之后回调
+     * @param latenessNanos 本次执行相对预期开始时间的延迟
+     * @param driftNanos 本次延迟与上一次延迟之差的绝对值，首次执行为0
+     */
+    default void onPeriodicStarted(long latenessNanos, long driftNanos) {
+    }
+
+    /**
+     * 任务执行结束（无论成功与否），上下文已恢复
+     * @param executionNanos 任务本身的执行耗时
+     * @param restoreNanos 恢复耗时
+     */
+    default void onCompleted(long executionNanos, long restoreNanos) {
+    }
+
+    /**
+     * 任务在队列中等待期间超过请求截止时间，未执行即被丢弃
+     */
+    default void onExpired() {
+    }
+
+    /**
+     * 任务被线程池拒绝
+     */
+    default void onRejected() {
+    }
+
+    /**
+     * 线程池关闭
+     */
+    default void onShutdown() {
+    }
+}
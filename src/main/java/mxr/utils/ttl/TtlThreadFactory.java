@@ -0,0 +1,73 @@
+package mxr.utils.ttl;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * TTL线程工厂
+ * <p>
+ * 创建实现了{@link TtlTrustedThread}的工作线程，TtlContextHolderUtil据此识别TTL线程池的线程。
+ * 线程名称仍保留TTL线程池标识前缀，仅用于日志排查，不再参与身份判断。
+ * </p>
+ * <p>
+ * 工作线程不继承创建线程的InheritableThreadLocal：线程池按需在提交线程上创建线程，
+ * 继承会使工作线程永久持有首次提交时所在请求的上下文。任务所需的上下文由TTL在执行时回放
+ * </p>
+ */
+public class TtlThreadFactory implements ThreadFactory {
+
+    private static final AtomicInteger POOL_NUMBER = new AtomicInteger(1);
+
+    private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+    private final String namePrefix;
+
+    private final int priority;
+
+    private final boolean daemon;
+
+    /**
+     * 使用默认名称前缀创建线程工厂，线程名称形如 TTL_EXECUTOR-pool-1-thread-1
+     */
+    public TtlThreadFactory() {
+        this(Thread.NORM_PRIORITY);
+    }
+
+    /**
+     * 使用默认名称前缀创建指定优先级的线程工厂
+     * @param priority 线程优先级
+     */
+    public TtlThreadFactory(int priority) {
+        this(TTLExecutorFactory.TTL_EXECUTOR_IDENTIFIER + "-pool-" + POOL_NUMBER.getAndIncrement() + "-thread-",
+                priority, false);
+    }
+
+    /**
+     * @param namePrefix 线程名称前缀，后接线程序号
+     * @param priority 线程优先级
+     * @param daemon 是否为守护线程
+     */
+    public TtlThreadFactory(String namePrefix, int priority, boolean daemon) {
+        this.namePrefix = namePrefix;
+        this.priority = priority;
+        this.daemon = daemon;
+    }
+
+    @Override
+    public Thread newThread(Runnable r) {
+        Thread thread = new TtlWorkerThread(r, namePrefix + threadNumber.getAndIncrement());
+        thread.setDaemon(daemon);
+        thread.setPriority(priority);
+        return thread;
+    }
+
+    /**
+     * TTL线程池工作线程
+     */
+    static final class TtlWorkerThread extends Thread implements TtlTrustedThread {
+
+        TtlWorkerThread(Runnable target, String name) {
+            super(null, target, name, 0, false);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package mxr.utils.ttl;
+
+/**
+ * 可信线程标记接口
+ * <p>
+ * 实现该接口的线程被视为由TTLExecutorFactory管理的线程，可以直接通过{@link TtlContextHolderUtil#getContext()}获取上下文。
+ * 判断只需一次instanceof检查，不依赖线程名称，线程被重命名或其他线程池使用相同名称前缀都不会影响判断结果。
+ * </p>
+ * <p>
+ * 接口是密封的，只有本包的工作线程可以实现，其他线程工厂无法通过实现该接口冒充可信线程；
+ * 第三方线程池需要通过{@link TtlContextHolderUtil#registerTrustedThreadMatcher(java.util.function.Predicate)}显式接入
+ * </p>
+ * @see TtlThreadFactory
+ * @see TtlForkJoinWorkerThreadFactory
+ */
+public sealed interface TtlTrustedThread
+        permits TtlThreadFactory.TtlWorkerThread, TtlForkJoinWorkerThreadFactory.TtlForkJoinWorkerThread {
+}
@@ -0,0 +1,54 @@
+package mxr.utils.ttl;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 基于虚拟线程的上下文传递线程池包装
+ * <p>
+ * 每个任务运行在新建的虚拟线程上，不复用线程，因此不经过TTL的capture/replay/restore：
+ * 提交时捕获一次上下文快照，执行时通过{@link ContextCarrier}绑定到虚拟线程，任务结束即解除绑定。
+ * 任务内通过{@link TtlContextHolderUtil#getContext()}读取的是载体中的快照；
+ * 任务内再向TTL线程池提交任务时，提交的任务捕获的也是载体中的上下文
+ * </p>
+ */
+public class VirtualThreadContextExecutorService extends ContextExecutorService {
+
+    private final ContextCarrier carrier = TtlContextHolderUtil.carrier();
+
+    /**
+     * @param name 线程池名称
+     * @param delegate 每任务一个虚拟线程的执行器
+     */
+    public VirtualThreadContextExecutorService(String name, ExecutorService delegate) {
+        super(name, delegate, TtlTaskListener.NOOP);
+    }
+
+    @Override
+    protected Runnable decorate(Runnable command) {
+        BaseContext<Object> context = TtlContextHolderUtil.captureForCarrier();
+        return () -> carrier.run(context, command);
+    }
+
+    /**
+     * 虚拟线程上的任务不排队，本来就不检查截止时间
+     */
+    @Override
+    protected Runnable decorateWithoutDeadline(Runnable command) {
+        return decorate(command);
+    }
+
+    @Override
+    protected Object captureContext() {
+        return TtlContextHolderUtil.captureForCarrier();
+    }
+
+    /**
+     * 整批任务共享同一份快照，每个任务在执行时派生各自的子上下文
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    protected Runnable decorate(Runnable command, Object captured) {
+        BaseContext<Object> context = (BaseContext<Object>) captured;
+        return () -> carrier.run(TtlContextHolderUtil.fork(context), command);
+    }
+}
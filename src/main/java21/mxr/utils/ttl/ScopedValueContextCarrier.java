@@ -0,0 +1,34 @@
+package mxr.utils.ttl;
+
+import java.util.concurrent.Callable;
+
+/**
+ * 基于ScopedValue的上下文载体
+ * <p>
+ * 仅在java21 profile下编译（只在Java 21上激活，--release 21 --enable-preview），运行时需要Java 21并开启 --enable-preview，
+ * 否则加载失败并由{@link ContextCarrier#load()}退化为ThreadLocal实现。
+ * 绑定随作用域结束自动解除，不在虚拟线程上留下任何ThreadLocal条目
+ * </p>
+ */
+final class ScopedValueContextCarrier implements ContextCarrier {
+
+    private static final ScopedValue<BaseContext<Object>> CONTEXT = ScopedValue.newInstance();
+
+    ScopedValueContextCarrier() {
+    }
+
+    @Override
+    public BaseContext<Object> current() {
+        return CONTEXT.orElse(null);
+    }
+
+    @Override
+    public void run(BaseContext<Object> context, Runnable task) {
+        ScopedValue.where(CONTEXT, context).run(task);
+    }
+
+    @Override
+    public <V> V call(BaseContext<Object> context, Callable<V> task) throws Exception {
+        return ScopedValue.where(CONTEXT, context).call(task);
+    }
+}
@@ -0,0 +1,157 @@
+package mxr.utils.ttl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * ContextCodec编解码往返测试
+ */
+class ContextCodecTest {
+
+    private final ContextCodec codec = new ContextCodec(64, 1024);
+
+    @Test
+    void roundTripsAllSupportedTypes() {
+        Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put("tenantId", "tenant-1");
+        properties.put("名称", "中文值");
+        properties.put("empty", "");
+        properties.put("int", Integer.MIN_VALUE);
+        properties.put("negative", -1);
+        properties.put("long", Long.MAX_VALUE);
+        properties.put("longMin", Long.MIN_VALUE);
+        properties.put("true", true);
+        properties.put("false", false);
+        properties.put("double", -0.5);
+        properties.put("nan", Double.NaN);
+
+        Map<String, Object> decoded = codec.decode(codec.encode(properties));
+
+        assertThat(decoded).containsExactlyEntriesOf(properties);
+    }
+
+    @Test
+    void skipsUnsupportedValuesAndFilteredKeys() {
+        Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put("keep", "v");
+        properties.put("object", new Object());
+        properties.put("nullValue", null);
+        properties.put("filtered", "secret");
+
+        String encoded = codec.encode(properties, key -> !"filtered".equals(key));
+
+        assertThat(codec.decode(encoded)).containsExactly(Map.entry("keep", "v"));
+        assertThat(codec.encode(Collections.singletonMap("object", new Object()))).isNull();
+    }
+
+    @Test
+    void compressesOnlyAboveThreshold() {
+        Map<String, Object> small = Collections.singletonMap("k", "v");
+        String smallEncoded = codec.encode(small);
+        assertThat(flags(smallEncoded) & 1).isZero();
+
+        Map<String, Object> large = new LinkedHashMap<>();
+        for (int i = 0; i < 20; i++) {
+            large.put("key-" + i, "repeated-value-repeated-value");
+        }
+        String largeEncoded = codec.encode(large);
+
+        assertThat(flags(largeEncoded) & 1).isEqualTo(1);
+        assertThat(codec.decode(largeEncoded)).containsExactlyEntriesOf(large);
+        assertThat(flags(new ContextCodec(0, 8192).encode(large)) & 1).isZero();
+    }
+
+    @Test
+    void keepsUncompressedPayloadWhenDeflateDoesNotShrinkIt() {
+        StringBuilder random = new StringBuilder();
+        Random rnd = new Random(42);
+        for (int i = 0; i < 100; i++) {
+            random.append((char) ('!' + rnd.nextInt(90)));
+        }
+        Map<String, Object> properties = Collections.singletonMap("k", random.toString());
+
+        String encoded = new ContextCodec(16, 8192).encode(properties);
+
+        assertThat(flags(encoded) & 1).isZero();
+        assertThat(codec.decode(encoded)).containsExactlyEntriesOf(properties);
+    }
+
+    @Test
+    void rejectsInputLongerThanMaxEncodedLength() {
+        ContextCodec strict = new ContextCodec(0, 16);
+        String encoded = strict.encode(Collections.singletonMap("key", "a value longer than sixteen"));
+
+        assertThat(encoded.length()).isGreaterThan(16);
+        assertThatThrownBy(() -> strict.decode(encoded))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("超过限制");
+    }
+
+    @Test
+    void rejectsCompressionBombs() {
+        Map<String, Object> properties = new LinkedHashMap<>();
+        StringBuilder zeros = new StringBuilder();
+        for (int i = 0; i < 4000; i++) {
+            zeros.append('0');
+        }
+        properties.put("k", zeros.toString());
+        ContextCodec writer = new ContextCodec(64, 8192);
+        String encoded = writer.encode(properties);
+
+        ContextCodec reader = new ContextCodec(64, encoded.length());
+        assertThatThrownBy(() -> reader.decode(encoded))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("解压后超过限制");
+    }
+
+    @Test
+    void rejectsMalformedInput() {
+        String valid = codec.encode(Collections.singletonMap("key", "value"));
+        byte[] bytes = Base64.getUrlDecoder().decode(valid);
+
+        // 非Base64字符
+        assertThatThrownBy(() -> codec.decode("***")).isInstanceOf(IllegalArgumentException.class);
+        // 少于版本与标志位
+        assertThatThrownBy(() -> codec.decode(encode(new byte[]{1}))).isInstanceOf(IllegalArgumentException.class);
+        // 版本不支持
+        byte[] badVersion = bytes.clone();
+        badVersion[0] = 2;
+        assertThatThrownBy(() -> codec.decode(encode(badVersion)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("版本");
+        // 截断
+        for (int length = 2; length < bytes.length; length++) {
+            byte[] truncated = Arrays.copyOf(bytes, length);
+            assertThatThrownBy(() -> codec.decode(encode(truncated))).isInstanceOf(IllegalArgumentException.class);
+        }
+        // 类型未知：版本、标志、1个条目、key长度1、key、类型
+        assertThatThrownBy(() -> codec.decode(encode(new byte[]{1, 0, 1, 1, 'k', 99})))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("类型未知");
+        // varint超过10字节
+        byte[] longVarint = new byte[]{1, 0, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF,
+                (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 1};
+        assertThatThrownBy(() -> codec.decode(encode(longVarint))).isInstanceOf(IllegalArgumentException.class);
+        // 标记为压缩但负载不是DEFLATE数据
+        byte[] fakeDeflate = bytes.clone();
+        fakeDeflate[1] = 1;
+        assertThatThrownBy(() -> codec.decode(encode(fakeDeflate))).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static int flags(String encoded) {
+        return Base64.getUrlDecoder().decode(encoded)[1];
+    }
+
+    private static String encode(byte[] bytes) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
@@ -0,0 +1,104 @@
+package mxr.utils.ttl;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * ContextExecutorService批量提交只捕获一次上下文、批内任务写入互不可见的测试
+ */
+class ContextExecutorServiceTest {
+
+    private final AtomicInteger captures = new AtomicInteger();
+
+    private ContextExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        TtlContextHolderUtil.markAsRequestThread();
+        TtlContextHolderUtil.getContext().addProperty("k", "v");
+        executor = new ContextExecutorService("batch-test",
+                Executors.newSingleThreadExecutor(new TtlThreadFactory()), new TtlTaskListener() {
+            @Override
+            public void onCaptured(long captureNanos) {
+                captures.incrementAndGet();
+            }
+        });
+    }
+
+    @AfterEach
+    void cleanUp() throws InterruptedException {
+        executor.shutdownNow();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+        TtlContextHolderUtil.clearContext();
+        TtlContextHolderUtil.clearRequestThreadMark();
+    }
+
+    @Test
+    void submitAllCapturesOncePerBatch() throws Exception {
+        Callable<Object> read = () -> TtlContextHolderUtil.getContext().getProperty("k");
+
+        List<Future<Object>> futures = executor.submitAll(Arrays.asList(read, read, read));
+
+        for (Future<Object> future : futures) {
+            assertThat(future.get(5, TimeUnit.SECONDS)).isEqualTo("v");
+        }
+        assertThat(captures).hasValue(1);
+
+        executor.submit(read).get(5, TimeUnit.SECONDS);
+        executor.submit(read).get(5, TimeUnit.SECONDS);
+        assertThat(captures).hasValue(3);
+    }
+
+    @Test
+    void tasksInBatchDoNotSeeEachOthersWrites() throws Exception {
+        Callable<Object> write = () -> {
+            TtlContextHolderUtil.getContext().addProperty("scratch", "first");
+            return TtlContextHolderUtil.getContext().getProperty("scratch");
+        };
+        Callable<Object> read = () -> TtlContextHolderUtil.getContext().getProperty("scratch");
+
+        List<Future<Object>> futures = executor.invokeAll(Arrays.asList(write, read));
+
+        // 单线程池中两个任务依次执行，后一个任务仍看不到前一个任务的写入
+        assertThat(futures.get(0).get()).isEqualTo("first");
+        assertThat(futures.get(1).get()).isNull();
+        assertThat(TtlContextHolderUtil.getContext().getProperty("scratch")).isNull();
+        assertThat(captures).hasValue(1);
+    }
+
+    @Test
+    void batchTaskWritesCanBeMergedBack() throws Exception {
+        Callable<BaseContext<Object>> write = () -> {
+            TtlContextHolderUtil.getContext().addProperty("result", "done");
+            return TtlContextHolderUtil.getContext();
+        };
+
+        List<Future<BaseContext<Object>>> futures = executor.invokeAll(Arrays.asList(write, write));
+        TtlContextHolderUtil.mergeBack(futures.get(0).get());
+
+        assertThat(TtlContextHolderUtil.getContext().getProperty("result")).isEqualTo("done");
+        assertThat(TtlContextHolderUtil.getContext().getProperty("k")).isEqualTo("v");
+    }
+
+    @Test
+    void parallelMapKeepsOrderAndSeesContext() throws Exception {
+        List<Integer> source = Arrays.asList(1, 2, 3, 4, 5);
+
+        List<String> mapped = executor.parallelMap(source,
+                i -> TtlContextHolderUtil.getContext().getProperty("k") + "" + i, 2);
+
+        assertThat(mapped).containsExactly("v1", "v2", "v3", "v4", "v5");
+        assertThat(captures).hasValue(1);
+    }
+}
@@ -0,0 +1,123 @@
+package mxr.utils.ttl;
+
+import com.alibaba.ttl.TtlRecursiveTask;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * ContextForkJoinPool与ContextSpliterator在并行流、递归任务中的上下文传递与各段隔离测试
+ */
+class ContextForkJoinPoolTest {
+
+    private ContextForkJoinPool pool;
+
+    @BeforeEach
+    void setUp() {
+        pool = TTLExecutorFactory.newForkJoinPool("fork-join-test", 4);
+        TtlContextHolderUtil.markAsRequestThread();
+        TtlContextHolderUtil.getContext().addProperty("k", "v");
+    }
+
+    @AfterEach
+    void cleanUp() throws InterruptedException {
+        pool.shutdownNow();
+        pool.awaitTermination(5, TimeUnit.SECONDS);
+        TtlContextHolderUtil.clearContext();
+        TtlContextHolderUtil.clearRequestThreadMark();
+    }
+
+    @Test
+    void parallelStreamSeesContextInEveryElement() {
+        List<Integer> source = IntStream.range(0, 10_000).boxed().collect(Collectors.toList());
+
+        List<Object> seen = pool.parallel(source,
+                s -> s.map(i -> TtlContextHolderUtil.getContext().getProperty("k")).collect(Collectors.toList()));
+
+        assertThat(seen).hasSize(source.size()).containsOnly("v");
+    }
+
+    @Test
+    void parallelStreamWritesStayInsideTheirSegment() {
+        List<Integer> source = IntStream.range(0, 1_000).boxed().collect(Collectors.toList());
+
+        pool.parallel(source, s -> {
+            s.forEach(i -> TtlContextHolderUtil.getContext().addProperty("scratch", i));
+            return null;
+        });
+
+        assertThat(TtlContextHolderUtil.getContext().getProperty("scratch")).isNull();
+    }
+
+    @Test
+    void splitsReplayIndependentChildContexts() {
+        List<Integer> source = IntStream.range(0, 8).boxed().collect(Collectors.toList());
+        Spliterator<Integer> first = new ContextSpliterator<>(source.spliterator());
+        Spliterator<Integer> second = first.trySplit();
+        List<Object> seenBySecond = new ArrayList<>();
+
+        // 在同一线程上依次处理两段，前一段的写入对后一段不可见
+        first.forEachRemaining(i -> TtlContextHolderUtil.getContext().addProperty("scratch", i));
+        second.forEachRemaining(i -> seenBySecond.add(TtlContextHolderUtil.getContext().getProperty("scratch")));
+
+        assertThat(seenBySecond).hasSize(4).containsOnlyNulls();
+        assertThat(TtlContextHolderUtil.getContext().getProperty("scratch")).isNull();
+        assertThat(TtlContextHolderUtil.getContext().getProperty("k")).isEqualTo("v");
+    }
+
+    @Test
+    void recursiveSubtasksSeeContextWhenStolen() {
+        List<Object> seen = pool.invoke(new CollectTask(0, 64));
+
+        assertThat(seen).hasSize(64).containsOnly("v");
+    }
+
+    @Test
+    void completableFutureOnPoolSeesContext() throws Exception {
+        Object seen = CompletableFuture.supplyAsync(() -> TtlContextHolderUtil.getContext().getProperty("k"), pool)
+                .get(5, TimeUnit.SECONDS);
+
+        assertThat(seen).isEqualTo("v");
+    }
+
+    /**
+     * 二分拆分到单个元素，每个叶子任务读取一次上下文
+     */
+    private static final class CollectTask extends TtlRecursiveTask<List<Object>> {
+
+        private final int from;
+
+        private final int to;
+
+        CollectTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<Object> compute() {
+            if (to - from == 1) {
+                List<Object> leaf = new ArrayList<>();
+                leaf.add(TtlContextHolderUtil.getContext().getProperty("k"));
+                return leaf;
+            }
+            int middle = (from + to) >>> 1;
+            CollectTask left = new CollectTask(from, middle);
+            CollectTask right = new CollectTask(middle, to);
+            left.fork();
+            List<Object> result = new ArrayList<>(right.compute());
+            result.addAll(left.join());
+            return result;
+        }
+    }
+}
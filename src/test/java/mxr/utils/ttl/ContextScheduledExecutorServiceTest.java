@@ -0,0 +1,129 @@
+package mxr.utils.ttl;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 周期任务按PeriodicContextPolicy回放、冻结或不携带上下文的测试
+ */
+class ContextScheduledExecutorServiceTest {
+
+    private static final int RUNS = 3;
+
+    private ContextScheduledExecutorService executor;
+
+    @BeforeEach
+    void markRequestThread() {
+        TtlContextHolderUtil.markAsRequestThread();
+        TtlContextHolderUtil.getContext().addProperty("k", "v");
+    }
+
+    @AfterEach
+    void cleanUp() throws InterruptedException {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        }
+        TtlContextHolderUtil.clearContext();
+        TtlContextHolderUtil.clearRequestThreadMark();
+    }
+
+    @Test
+    void replayPolicySeesScheduledContextOnEveryRun() throws Exception {
+        executor = TTLExecutorFactory.newScheduledThreadPool("scheduled-test-replay", 1);
+
+        List<String> runs = runPeriodic(null);
+
+        assertThat(runs).containsOnly("v:writable").hasSize(RUNS);
+        assertThat(leftoverContext()).isNull();
+    }
+
+    @Test
+    void frozenPolicySeesReadOnlyCopy() throws Exception {
+        executor = TTLExecutorFactory.newScheduledThreadPool("scheduled-test-frozen", 1, PeriodicContextPolicy.FROZEN);
+
+        List<String> runs = runPeriodic(null);
+
+        assertThat(runs).containsOnly("v:read-only").hasSize(RUNS);
+        assertThat(leftoverContext()).isNull();
+    }
+
+    @Test
+    void nonePolicyCarriesNoContext() throws Exception {
+        executor = TTLExecutorFactory.newScheduledThreadPool("scheduled-test-none", 1, PeriodicContextPolicy.NONE);
+
+        List<String> runs = runPeriodic(null);
+
+        assertThat(runs).containsOnly("null:read-only").hasSize(RUNS);
+        assertThat(leftoverContext()).isNull();
+    }
+
+    @Test
+    void perTaskPolicyOverridesPoolDefault() throws Exception {
+        executor = TTLExecutorFactory.newScheduledThreadPool("scheduled-test-override", 1, PeriodicContextPolicy.NONE);
+
+        List<String> runs = runPeriodic(PeriodicContextPolicy.FROZEN);
+
+        assertThat(runs).containsOnly("v:read-only").hasSize(RUNS);
+    }
+
+    @Test
+    void oneShotTasksIgnorePeriodicPolicy() throws Exception {
+        executor = TTLExecutorFactory.newScheduledThreadPool("scheduled-test-oneshot", 1, PeriodicContextPolicy.NONE);
+
+        ScheduledFuture<String> future = executor.schedule(ContextScheduledExecutorServiceTest::observe,
+                1, TimeUnit.MILLISECONDS);
+
+        assertThat(future.get(5, TimeUnit.SECONDS)).isEqualTo("v:writable");
+    }
+
+    /**
+     * 提交固定频率的周期任务，记录前RUNS次执行看到的属性与上下文是否可写
+     * @param policy 任务级策略，为null时使用线程池默认策略
+     */
+    private List<String> runPeriodic(PeriodicContextPolicy policy) throws InterruptedException {
+        List<String> runs = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(RUNS);
+        Runnable task = () -> {
+            if (done.getCount() > 0) {
+                runs.add(observe());
+                done.countDown();
+            }
+        };
+        ScheduledFuture<?> future = policy == null
+                ? executor.scheduleAtFixedRate(task, 0, 5, TimeUnit.MILLISECONDS)
+                : executor.scheduleAtFixedRate(task, 0, 5, TimeUnit.MILLISECONDS, policy);
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        future.cancel(false);
+        return new ArrayList<>(runs);
+    }
+
+    private static String observe() {
+        BaseContext<Object> context = TtlContextHolderUtil.getContext();
+        String mode;
+        try {
+            context.addProperty("scratch", "run");
+            mode = "writable";
+        } catch (UnsupportedOperationException e) {
+            mode = "read-only";
+        }
+        return context.getProperty("k") + ":" + mode;
+    }
+
+    /**
+     * 在同一工作线程上直接执行任务，读取周期任务结束后遗留的上下文
+     */
+    private BaseContext<Object> leftoverContext() throws Exception {
+        return executor.unwrap().submit(TtlContextHolderUtil::currentContextOrNull).get(5, TimeUnit.SECONDS);
+    }
+}
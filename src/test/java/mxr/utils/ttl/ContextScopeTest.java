@@ -0,0 +1,127 @@
+package mxr.utils.ttl;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * ContextScope子任务的上下文传递、快速失败、等待全部完成与超时取消测试
+ */
+class ContextScopeTest {
+
+    private ContextExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        executor = TTLExecutorFactory.newFixedThreadPool("scope-test", 3);
+        TtlContextHolderUtil.markAsRequestThread();
+        TtlContextHolderUtil.getContext().addProperty("k", "v");
+    }
+
+    @AfterEach
+    void cleanUp() throws InterruptedException {
+        executor.shutdownNow();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+        TtlContextHolderUtil.clearContext();
+        TtlContextHolderUtil.clearRequestThreadMark();
+    }
+
+    @Test
+    void subtasksSeeForkingThreadContext() throws Exception {
+        try (ContextScope scope = TtlContextHolderUtil.scope(executor)) {
+            ContextScope.Subtask<Object> first = scope.fork(() -> TtlContextHolderUtil.getContext().getProperty("k"));
+            ContextScope.Subtask<Object> second = scope.fork(() -> TtlContextHolderUtil.getContext().getProperty("k"));
+
+            scope.join(5, TimeUnit.SECONDS);
+
+            assertThat(first.get()).isEqualTo("v");
+            assertThat(second.get()).isEqualTo("v");
+        }
+    }
+
+    @Test
+    void failFastCancelsRemainingSubtasks() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        try (ContextScope scope = TtlContextHolderUtil.scope(executor)) {
+            ContextScope.Subtask<Object> slow = scope.fork(() -> {
+                started.countDown();
+                try {
+                    Thread.sleep(TimeUnit.SECONDS.toMillis(30));
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                    throw e;
+                }
+                return null;
+            });
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+            scope.fork(() -> {
+                throw new IllegalStateException("boom");
+            });
+
+            assertThatThrownBy(() -> scope.join(5, TimeUnit.SECONDS))
+                    .isInstanceOf(ExecutionException.class)
+                    .hasCauseInstanceOf(IllegalStateException.class);
+            assertThat(slow.isCancelled()).isTrue();
+            assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThatThrownBy(() -> scope.fork(() -> null)).isInstanceOf(IllegalStateException.class);
+        }
+    }
+
+    @Test
+    void allCompleteWaitsForEverySubtask() throws Exception {
+        try (ContextScope scope = TtlContextHolderUtil.scope(executor, ContextScope.JoinPolicy.ALL_COMPLETE)) {
+            ContextScope.Subtask<Object> failed = scope.fork(() -> {
+                throw new IllegalStateException("boom");
+            });
+            ContextScope.Subtask<Object> slow = scope.fork(() -> {
+                Thread.sleep(50);
+                return TtlContextHolderUtil.getContext().getProperty("k");
+            });
+
+            scope.join(5, TimeUnit.SECONDS);
+
+            assertThat(failed.isFailed()).isTrue();
+            assertThat(failed.exception()).isInstanceOf(IllegalStateException.class);
+            assertThat(slow.isFailed()).isFalse();
+            assertThat(slow.get()).isEqualTo("v");
+        }
+    }
+
+    @Test
+    void joinTimeoutCancelsSubtasks() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        try (ContextScope scope = TtlContextHolderUtil.scope(executor)) {
+            ContextScope.Subtask<Object> blocked = scope.fork(() -> {
+                release.await();
+                return null;
+            });
+
+            assertThatThrownBy(() -> scope.join(20, TimeUnit.MILLISECONDS)).isInstanceOf(TimeoutException.class);
+            assertThat(blocked.isCancelled()).isTrue();
+        }
+    }
+
+    @Test
+    void closeCancelsSubtasksAndRejectsNewForks() {
+        CountDownLatch release = new CountDownLatch(1);
+        ContextScope scope = TtlContextHolderUtil.scope(executor);
+        ContextScope.Subtask<Object> blocked = scope.fork(() -> {
+            release.await();
+            return null;
+        });
+
+        scope.close();
+
+        assertThat(blocked.isCancelled()).isTrue();
+        assertThatThrownBy(() -> scope.fork(() -> null)).isInstanceOf(IllegalStateException.class);
+    }
+}
@@ -0,0 +1,181 @@
+package mxr.utils.ttl;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * FairContextExecutorService按key加权轮转、队列容量、空闲key移除与被包装线程池拒绝的测试
+ */
+class FairContextExecutorServiceTest {
+
+    private static final String KEY = "tenant";
+
+    private final List<String> executed = Collections.synchronizedList(new ArrayList<>());
+
+    private FairContextExecutorService executor;
+
+    @BeforeEach
+    void markRequestThread() {
+        TtlContextHolderUtil.markAsRequestThread();
+    }
+
+    @AfterEach
+    void cleanUp() throws InterruptedException {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        }
+        TtlContextHolderUtil.clearContext();
+        TtlContextHolderUtil.clearRequestThreadMark();
+    }
+
+    @Test
+    void roundRobinsAcrossKeys() throws Exception {
+        executor = TTLExecutorFactory.newFairExecutor("fair-test-rr", KEY, 1, 0, 0);
+        CountDownLatch release = block("x");
+        submitAll("a", 4);
+        submitAll("b", 2);
+
+        release.countDown();
+        await(() -> executed.size() == 7);
+
+        assertThat(executed).containsExactly("x", "a1", "b1", "a2", "b2", "a3", "a4");
+    }
+
+    @Test
+    void weightLetsKeyTakeSeveralTasksPerTurn() throws Exception {
+        executor = TTLExecutorFactory.newFairExecutor("fair-test-weight", KEY, 1, 0, 0);
+        executor.setWeight("a", 2);
+        CountDownLatch release = block("x");
+        submitAll("a", 4);
+        submitAll("b", 2);
+
+        release.countDown();
+        await(() -> executed.size() == 7);
+
+        assertThat(executed).containsExactly("x", "a1", "a2", "b1", "a3", "a4", "b2");
+    }
+
+    @Test
+    void rejectsWhenKeyQueueIsFull() throws Exception {
+        executor = TTLExecutorFactory.newFairExecutor("fair-test-queue", KEY, 1, 0, 1);
+        CountDownLatch release = block("x");
+        submitAll("a", 1);
+
+        assertThatThrownBy(() -> submitAll("a", 1)).isInstanceOf(RejectedExecutionException.class);
+        // 其他key不受影响
+        submitAll("b", 1);
+
+        release.countDown();
+        await(() -> executed.size() == 3);
+        assertThat(executed).containsExactly("x", "a1", "b1");
+    }
+
+    @Test
+    void evictsIdleKeysButKeepsConfiguredOnes() throws Exception {
+        executor = TTLExecutorFactory.newFairExecutor("fair-test-evict", KEY, 2, 0, 0);
+        executor.setMaxConcurrency("configured", 1);
+        submitAll("a", 3);
+        submitAll("b", 3);
+
+        await(() -> executed.size() == 6 && executor.getKeyCount() == 1);
+
+        assertThat(executor.getQueued("a")).isZero();
+        assertThat(executor.getRunning("b")).isZero();
+    }
+
+    @Test
+    void transientDelegateRejectionCancelsOnlyThatTask() throws Exception {
+        AtomicBoolean rejectNext = new AtomicBoolean();
+        ThreadPoolExecutor delegate = new ThreadPoolExecutor(2, 2, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), new TtlThreadFactory()) {
+            @Override
+            public void execute(Runnable command) {
+                if (rejectNext.compareAndSet(true, false)) {
+                    throw new RejectedExecutionException("transient");
+                }
+                super.execute(command);
+            }
+        };
+        executor = new FairContextExecutorService("fair-test-transient", delegate, TtlTaskListener.NOOP,
+                KEY, 2, 0, 0);
+        TtlContextHolderUtil.getContext().addProperty(KEY, "a");
+
+        rejectNext.set(true);
+        Future<?> rejected = executor.submit(() -> executed.add("rejected"));
+
+        assertThat(rejected.isCancelled()).isTrue();
+        assertThatThrownBy(rejected::get).isInstanceOf(CancellationException.class);
+        assertThat(executor.isShutdown()).isFalse();
+        executor.submit(() -> executed.add("next")).get(5, TimeUnit.SECONDS);
+        assertThat(executed).containsExactly("next");
+    }
+
+    @Test
+    void refusesNewKeysAfterShutdown() throws Exception {
+        executor = TTLExecutorFactory.newFairExecutor("fair-test-shutdown", KEY, 1, 0, 0);
+        submitAll("a", 1);
+        executor.shutdown();
+
+        assertThat(executor.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+        assertThatThrownBy(() -> executor.setWeight("late", 2)).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> submitAll("late", 1)).isInstanceOf(RejectedExecutionException.class);
+        assertThat(executor.getKeyCount()).isZero();
+    }
+
+    /**
+     * 以指定key提交一个阻塞任务，占住工作线程直到返回的latch被释放
+     */
+    private CountDownLatch block(String key) throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        TtlContextHolderUtil.getContext().addProperty(KEY, key);
+        executor.execute(() -> {
+            executed.add(String.valueOf(TtlContextHolderUtil.getContext().getProperty(KEY)));
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        return release;
+    }
+
+    /**
+     * 以指定key提交count个任务，任务记录回放得到的key与序号
+     */
+    private void submitAll(String key, int count) {
+        TtlContextHolderUtil.getContext().addProperty(KEY, key);
+        for (int i = 1; i <= count; i++) {
+            int index = i;
+            executor.execute(() -> executed.add(TtlContextHolderUtil.getContext().getProperty(KEY) + "" + index));
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("等待任务执行完").isLessThan(deadline);
+            Thread.sleep(5);
+        }
+    }
+}
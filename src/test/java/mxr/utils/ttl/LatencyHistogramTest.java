@@ -0,0 +1,106 @@
+package mxr.utils.ttl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * LatencyHistogram分桶与百分位数测试
+ */
+class LatencyHistogramTest {
+
+    private static final long MAX_TRACKABLE = (1L << 36) - 1;
+
+    @Test
+    void smallValuesAreExact() {
+        for (int value = 0; value < 64; value++) {
+            assertThat(LatencyHistogram.bucketIndex(value)).isEqualTo(value);
+            assertThat(LatencyHistogram.lowerBound(value)).isEqualTo(value);
+        }
+    }
+
+    @Test
+    void bucketsAreContiguousAndLowerBoundIsInverse() {
+        for (int index = 0; index < LatencyHistogram.BUCKET_COUNT; index++) {
+            long lower = LatencyHistogram.lowerBound(index);
+            assertThat(LatencyHistogram.bucketIndex(lower)).as("lowerBound(%d)", index).isEqualTo(index);
+            if (index + 1 < LatencyHistogram.BUCKET_COUNT) {
+                long next = LatencyHistogram.lowerBound(index + 1);
+                assertThat(next).isGreaterThan(lower);
+                assertThat(LatencyHistogram.bucketIndex(next - 1)).as("upper bound of %d", index).isEqualTo(index);
+            }
+        }
+        assertThat(LatencyHistogram.bucketIndex(MAX_TRACKABLE)).isEqualTo(LatencyHistogram.BUCKET_COUNT - 1);
+    }
+
+    @Test
+    void bucketWidthStaysWithinRelativeError() {
+        for (int index = 64; index + 1 < LatencyHistogram.BUCKET_COUNT; index++) {
+            long lower = LatencyHistogram.lowerBound(index);
+            long width = LatencyHistogram.lowerBound(index + 1) - lower;
+            assertThat((double) width / lower).as("bucket %d", index).isLessThanOrEqualTo(1.0 / 32);
+        }
+    }
+
+    @Test
+    void percentilesTrackRecordedValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 1000; micros++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(micros));
+        }
+        histogram.record(-5L);
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertThat(snapshot.getCount()).isEqualTo(1001);
+        assertThat(snapshot.getMax()).isEqualTo(TimeUnit.MICROSECONDS.toNanos(1000));
+        assertThat((double) snapshot.getValueAtPercentile(50)).isCloseTo(500_000.0, within(500_000.0 / 32));
+        assertThat((double) snapshot.getValueAtPercentile(99)).isCloseTo(990_000.0, within(990_000.0 / 32));
+        assertThat(snapshot.getValueAtPercentile(100)).isEqualTo(snapshot.getMax());
+        assertThat(snapshot.getValueAtPercentile(0)).isZero();
+    }
+
+    @Test
+    void valuesAboveTrackableRangeKeepExactMax() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        long huge = MAX_TRACKABLE * 4;
+        histogram.record(huge);
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertThat(snapshot.getMax()).isEqualTo(huge);
+        assertThat(snapshot.getValueAtPercentile(50)).isEqualTo(MAX_TRACKABLE);
+    }
+
+    @Test
+    void snapshotAndResetStartsNewInterval() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(100L);
+        histogram.record(200L);
+
+        LatencyHistogram.Snapshot first = histogram.snapshotAndReset();
+        LatencyHistogram.Snapshot second = histogram.snapshot();
+
+        assertThat(first.getCount()).isEqualTo(2);
+        assertThat(first.getMean()).isEqualTo(150.0);
+        assertThat(second.getCount()).isZero();
+        assertThat(second.getMax()).isZero();
+        assertThat(second.getValueAtPercentile(99)).isZero();
+    }
+
+    @Test
+    void totalsSurviveSnapshotAndReset() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(100L);
+        histogram.record(200L);
+        histogram.snapshotAndReset();
+        histogram.record(300L);
+
+        assertThat(histogram.totalCount()).isEqualTo(3);
+        assertThat(histogram.totalNanos()).isEqualTo(600L);
+        assertThat(histogram.snapshot().getCount()).isEqualTo(1);
+    }
+}
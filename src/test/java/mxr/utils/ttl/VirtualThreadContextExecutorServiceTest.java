@@ -0,0 +1,86 @@
+package mxr.utils.ttl;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * 虚拟线程执行器的任务再向TTL线程池提交任务时的上下文传递测试
+ */
+class VirtualThreadContextExecutorServiceTest {
+
+    private static ContextExecutorService ttlPool;
+
+    @BeforeAll
+    static void createPool() {
+        ttlPool = TTLExecutorFactory.newFixedThreadPool("vt-nested-test", 1);
+    }
+
+    @AfterAll
+    static void shutdownPool() throws InterruptedException {
+        ttlPool.shutdown();
+        ttlPool.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    @AfterEach
+    void clearRequestThread() {
+        TtlContextHolderUtil.clearContext();
+        TtlContextHolderUtil.clearRequestThreadMark();
+    }
+
+    @Test
+    void carrierContextReachesNestedTtlPoolTasks() throws Exception {
+        BaseContext<Object> carried = requestSnapshot("k", "v");
+        AtomicReference<Object> nested = new AtomicReference<>();
+
+        TtlContextHolderUtil.carrier().call(carried, () -> {
+            nested.set(ttlPool.submit(() -> TtlContextHolderUtil.getContext().getProperty("k")).get());
+            return null;
+        });
+
+        assertThat(nested.get()).isEqualTo("v");
+        // 捕获结束后不在当前线程的TTL中留下载体的上下文
+        assertThat(TtlContextHolderUtil.currentContextOrNull()).isNull();
+    }
+
+    @Test
+    void nestedSubmitFromVirtualThreadSeesContext() throws Exception {
+        assumeTrue(Runtime.version().feature() >= 21, "需要Java 21的虚拟线程");
+        ContextExecutorService virtual = TTLExecutorFactory.newVirtualThreadExecutor("vt-nested-test-virtual");
+        try {
+            TtlContextHolderUtil.markAsRequestThread();
+            TtlContextHolderUtil.getContext().addProperty("k", "v");
+
+            Object[] seen = virtual.submit(() -> {
+                TtlContextHolderUtil.getContext().addProperty("written", "vt");
+                Object[] child = ttlPool.submit(() -> new Object[]{
+                        TtlContextHolderUtil.getContext().getProperty("k"),
+                        TtlContextHolderUtil.getContext().getProperty("written")}).get();
+                return new Object[]{TtlContextHolderUtil.getContext().getProperty("k"), child[0], child[1]};
+            }).get(5, TimeUnit.SECONDS);
+
+            assertThat(seen).containsExactly("v", "v", "vt");
+        } finally {
+            virtual.shutdown();
+        }
+    }
+
+    /**
+     * 在请求线程上写入属性后派生子上下文，模拟虚拟线程执行器交给载体的快照
+     */
+    private static BaseContext<Object> requestSnapshot(String key, Object value) {
+        TtlContextHolderUtil.markAsRequestThread();
+        TtlContextHolderUtil.getContext().addProperty(key, value);
+        BaseContext<Object> snapshot = TtlContextHolderUtil.snapshot(TtlContextHolderUtil.getContext());
+        TtlContextHolderUtil.clearContext();
+        TtlContextHolderUtil.clearRequestThreadMark();
+        return snapshot;
+    }
+}